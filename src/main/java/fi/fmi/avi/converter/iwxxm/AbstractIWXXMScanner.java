@@ -332,8 +332,8 @@ public abstract class AbstractIWXXMScanner extends IWXXMConverterBase {
             if (recordNode != null && "MeteorologicalAerodromeForecastRecord".equals(recordNode.getLocalName()) && "http://icao.int/iwxxm/2.1".equals(
                     recordNode.getNamespaceURI())) {
                 try {
-                    JAXBElement<MeteorologicalAerodromeForecastRecordType> record = refCtx.getJAXBBinder()
-                            .unmarshal(recordNode, MeteorologicalAerodromeForecastRecordType.class);
+                    JAXBElement<MeteorologicalAerodromeForecastRecordType> record = refCtx.unmarshal(recordNode,
+                            MeteorologicalAerodromeForecastRecordType.class);
                     return Optional.of(record.getValue());
                 } catch (JAXBException e) {
                     LOG.error("Strange, could not unmarshall MeteorologicalAerodromeForecastRecord DOM Node into"
@@ -353,8 +353,8 @@ public abstract class AbstractIWXXMScanner extends IWXXMConverterBase {
             if (recordNode != null && "MeteorologicalAerodromeTrendForecastRecord".equals(recordNode.getLocalName()) && "http://icao.int/iwxxm/2.1".equals(
                     recordNode.getNamespaceURI())) {
                 try {
-                    JAXBElement<MeteorologicalAerodromeTrendForecastRecordType> record = refCtx.getJAXBBinder()
-                            .unmarshal(recordNode, MeteorologicalAerodromeTrendForecastRecordType.class);
+                    JAXBElement<MeteorologicalAerodromeTrendForecastRecordType> record = refCtx.unmarshal(recordNode,
+                            MeteorologicalAerodromeTrendForecastRecordType.class);
                     return Optional.of(record.getValue());
                 } catch (JAXBException e) {
                     LOG.error("Strange, could not unmarshall MeteorologicalAerodromeTrendForecastRecordType DOM Node into"
@@ -374,8 +374,8 @@ public abstract class AbstractIWXXMScanner extends IWXXMConverterBase {
             if (recordNode != null && "MeteorologicalAerodromeObservationRecord".equals(recordNode.getLocalName()) && "http://icao.int/iwxxm/2.1".equals(
                     recordNode.getNamespaceURI())) {
                 try {
-                    JAXBElement<MeteorologicalAerodromeObservationRecordType> record = refCtx.getJAXBBinder()
-                            .unmarshal(recordNode, MeteorologicalAerodromeObservationRecordType.class);
+                    JAXBElement<MeteorologicalAerodromeObservationRecordType> record = refCtx.unmarshal(recordNode,
+                            MeteorologicalAerodromeObservationRecordType.class);
                     return Optional.of(record.getValue());
                 } catch (JAXBException e) {
                     LOG.error("Strange, could not unmarshall MeteorologicalAerodromeObservationRecord DOM Node into "
@@ -5,27 +5,35 @@ import java.io.InputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.math.BigInteger;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.ValidationEvent;
 import javax.xml.bind.ValidationEventHandler;
 import javax.xml.namespace.QName;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
 
 import net.opengis.gml32.AbstractGeometryType;
 import net.opengis.gml32.AngleType;
@@ -42,8 +50,7 @@ import net.opengis.sampling.spatial.SFSpatialSamplingFeatureType;
 import net.opengis.sampling.spatial.ShapeType;
 
 import org.w3c.dom.Document;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
+import org.xml.sax.ContentHandler;
 
 import aero.aixm511.AirportHeliportTimeSlicePropertyType;
 import aero.aixm511.AirportHeliportTimeSliceType;
@@ -77,22 +84,80 @@ import icao.iwxxm21.SigConvectiveCloudTypeType;
  * Common functionality for serializing aviation messages into IWXXM.
  */
 public abstract class AbstractIWXXMSerializer extends IWXXMConverterBase {
+    private static final ConcurrentMap<List<Object>, Templates> CLEANUP_TEMPLATES = new ConcurrentHashMap<>();
+    //TransformerFactory instances are not guaranteed to be thread-safe:
+    private static final ThreadLocal<SAXTransformerFactory> TRANSFORMER_FACTORY = ThreadLocal.withInitial(
+            () -> (SAXTransformerFactory) TransformerFactory.newInstance());
 
     protected Document renderXMLDocument(final Object input, final ConversionHints hints) throws ConversionException {
+        return this.renderXMLDocument(input, null, hints, null);
+    }
+
+    /**
+     * Renders the given JAXB content tree into a DOM Document, validating it against the XML Schema
+     * of the given message type.
+     *
+     * Unless the hint {@link IWXXMConversionHints#KEY_SERIALIZATION_VALIDATION} requests a separate validation pass,
+     * the content tree is marshalled only once, and the validation is done while rendering.
+     *
+     * @param input
+     *         the JAXB content tree to render
+     * @param validationClass
+     *         the JAXB type to validate the input as, or null for no validation
+     * @param hints
+     *         conversion hints
+     * @param eventHandler
+     *         the handler collecting the validation issues, or null for no validation
+     *
+     * @return the rendered document, or null if the validation failed
+     *
+     * @throws ConversionException
+     *         if the document cannot be rendered
+     */
+    protected <S> Document renderXMLDocument(final S input, final Class<S> validationClass, final ConversionHints hints,
+            final ConverterValidationEventHandler eventHandler) throws ConversionException {
+        final DOMResult output = new DOMResult();
+        if (this.renderCleanedUpXML(input, validationClass, hints, eventHandler, output)) {
+            final Document retval = (Document) output.getNode();
+            validateRenderedDocument(input, validationClass, new DOMSource(retval), hints, eventHandler);
+            return retval;
+        }
+        return null;
+    }
+
+    protected String renderXMLString(final Object input, final ConversionHints hints) throws ConversionException {
+        return this.renderXMLString(input, null, hints, null);
+    }
+
+    /**
+     * Renders the given JAXB content tree directly into a String without building an intermediate DOM,
+     * validating it against the XML Schema of the given message type.
+     *
+     * @param input
+     *         the JAXB content tree to render
+     * @param validationClass
+     *         the JAXB type to validate the input as, or null for no validation
+     * @param hints
+     *         conversion hints
+     * @param eventHandler
+     *         the handler collecting the validation issues, or null for no validation
+     *
+     * @return the rendered XML document, or null if the validation failed
+     *
+     * @throws ConversionException
+     *         if the document cannot be rendered
+     *
+     * @see #renderXMLDocument(Object, Class, ConversionHints, ConverterValidationEventHandler)
+     */
+    protected <S> String renderXMLString(final S input, final Class<S> validationClass, final ConversionHints hints,
+            final ConverterValidationEventHandler eventHandler) throws ConversionException {
         final StringWriter sw = new StringWriter();
-        try {
-            final Marshaller marshaller = getJAXBContext().createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
-            marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION,
-                    "http://icao.int/iwxxm/2.1 http://schemas.wmo.int/iwxxm/2.1.1/iwxxm.xsd http://def.wmo.int/metce/2013 "
-                            + "http://schemas.wmo.int/metce/1.2/metce.xsd http://def.wmo.int/collect/2014 http://schemas.wmo.int/collect/1.2/collect.xsd "
-                            + "http://www.opengis.net/samplingSpatial/2.0 http://schemas.opengis.net/samplingSpatial/2.0/spatialSamplingFeature.xsd");
-            marshaller.setProperty("com.sun.xml.bind.namespacePrefixMapper", new IWXXMNamespaceContext());
-            marshaller.marshal(wrap(input, (Class<Object>) input.getClass()), sw);
-            return asCleanedUpXML(sw.toString(), hints);
-        } catch (final JAXBException e) {
-            throw new ConversionException("Exception in rendering to DOM", e);
+        if (this.renderCleanedUpXML(input, validationClass, hints, eventHandler, new StreamResult(sw))) {
+            final String retval = sw.toString();
+            validateRenderedDocument(input, validationClass, new StreamSource(new StringReader(retval)), hints, eventHandler);
+            return retval;
         }
+        return null;
     }
 
     protected String renderDOMToString(final Document source, ConversionHints hints) throws ConversionException {
@@ -100,14 +165,8 @@ public abstract class AbstractIWXXMSerializer extends IWXXMConverterBase {
             try {
                 StringWriter sw = new StringWriter();
                 Result output = new StreamResult(sw);
-                TransformerFactory tFactory = TransformerFactory.newInstance();
-                Transformer transformer = tFactory.newTransformer();
-
-                //TODO: switch these on based on the ConversionHints:
-                transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
-                transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-                transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-
+                Transformer transformer = TRANSFORMER_FACTORY.get().newTransformer();
+                setStringOutputProperties(transformer, hints);
                 DOMSource dsource = new DOMSource(source);
                 transformer.transform(dsource, output);
                 return sw.toString();
@@ -118,28 +177,172 @@ public abstract class AbstractIWXXMSerializer extends IWXXMConverterBase {
         return null;
     }
 
-    private Document asCleanedUpXML(final String input , final ConversionHints hints) throws ConversionException {
+    /*
+     * Checks the rendered document against the IWXXM Schematron rules, if requested with
+     * the validation level hint. The failed assertions are added to the conversion result.
+     */
+    @SuppressWarnings("unchecked")
+    private static <S> void validateRenderedDocument(final S input, final Class<S> validationClass, final Source rendered, final ConversionHints hints,
+            final ConverterValidationEventHandler eventHandler) {
+        if (validationClass == null || eventHandler == null || !includesSchematronValidation(
+                getValidationLevel(hints, IWXXMConversionHints.VALUE_VALIDATION_LEVEL_SCHEMA))) {
+            return;
+        }
+        final QName rootElement = wrap(input, (Class<S>) input.getClass()).getName();
+        eventHandler.getResult().addIssue(AbstractJAXBIWXXMParser.validateAgainstIWXXMSchematron(rendered, rootElement, hints));
+    }
+
+    /*
+     * Streams the JAXB content as SAX events through the cleanup transformation to the given output,
+     * validating it on the way if requested. Returns false if validation errors were found.
+     */
+    @SuppressWarnings("unchecked")
+    private <S> boolean renderCleanedUpXML(final S input, final Class<S> validationClass, final ConversionHints hints,
+            final ConverterValidationEventHandler eventHandler, final Result output) throws ConversionException {
+        final boolean validate = validationClass != null && eventHandler != null && includesSchemaValidation(
+                getValidationLevel(hints, IWXXMConversionHints.VALUE_VALIDATION_LEVEL_SCHEMA));
+        final boolean singlePass = IWXXMConversionHints.VALUE_SERIALIZATION_VALIDATION_SINGLE_PASS.equals(
+                IWXXMConversionHints.getOrDefault(hints, IWXXMConversionHints.KEY_SERIALIZATION_VALIDATION,
+                        IWXXMConversionHints.VALUE_SERIALIZATION_VALIDATION_SINGLE_PASS));
+        if (validate && !singlePass) {
+            validateDocument(input, validationClass, hints, eventHandler);
+            if (eventHandler.errorsFound()) {
+                return false;
+            }
+        }
+        final JAXBObjectPool<Marshaller> pool = getRenderingMarshallerPool(
+                validate && singlePass ? IWXXMSchemaRegistry.SchemaSet.forMessageClass(validationClass) : null);
+        try {
+            final Marshaller marshaller = pool.borrow();
+            try {
+                if (validate && singlePass) {
+                    marshaller.setEventHandler(eventHandler);
+                }
+                final ContentHandler cleanup;
+                if (IWXXMConversionHints.VALUE_CLEANUP_XSLT.equals(
+                        IWXXMConversionHints.getOrDefault(hints, IWXXMConversionHints.KEY_CLEANUP, IWXXMConversionHints.VALUE_CLEANUP_NATIVE))) {
+                    cleanup = createOutputHandler(this.getCleanupTemplates(hints), output, hints);
+                } else {
+                    final IWXXMCleanupFilter filter = this.createCleanupFilter(hints);
+                    filter.setContentHandler(createOutputHandler(null, output, hints));
+                    cleanup = filter;
+                }
+                marshaller.marshal(wrap(input, (Class<S>) input.getClass()), cleanup);
+            } finally {
+                marshaller.setEventHandler(null);
+                pool.release(marshaller);
+            }
+            return !(validate && eventHandler.errorsFound());
+        } catch (final JAXBException | TransformerConfigurationException e) {
+            throw new ConversionException("Exception in rendering IWXXM document", e);
+        }
+    }
+
+    /*
+       Performance optimization: the cleanup stylesheets are compiled only once into
+       Templates objects shared by all the threads, each rendering only creates a new
+       light-weight TransformerHandler from the Templates.
+    */
+    Templates getCleanupTemplates(final ConversionHints hints) throws ConversionException {
+        final URL stylesheet = this.getCleanupTransformationStylesheetLocation(hints);
+        final List<Object> key = new ArrayList<>();
+        //Stylesheets only available as streams are cached per serializer class:
+        key.add(stylesheet != null ? stylesheet.toExternalForm() : this.getClass());
+        for (final ConversionHints.Key hintKey : this.getCleanupTransformationHintKeys()) {
+            key.add(hints != null ? hints.get(hintKey) : null);
+        }
+        Templates retval = CLEANUP_TEMPLATES.get(key);
+        if (retval == null) {
+            if (stylesheet != null) {
+                retval = compileCleanupTemplates(new StreamSource(stylesheet.toExternalForm()));
+            } else {
+                try (InputStream is = this.getCleanupTransformationStylesheet(hints)) {
+                    retval = compileCleanupTemplates(new StreamSource(is));
+                } catch (final IOException e) {
+                    throw new ConversionException("Unable to read cleanup XSLT sheet", e);
+                }
+            }
+            final Templates existing = CLEANUP_TEMPLATES.putIfAbsent(key, retval);
+            if (existing != null) {
+                retval = existing;
+            }
+        }
+        return retval;
+    }
+
+    private static Templates compileCleanupTemplates(final StreamSource stylesheet) throws ConversionException {
         try {
-            final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(true);
-            dbf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, F_SECURE_PROCESSING);
-            final DocumentBuilder db = dbf.newDocumentBuilder();
-            final InputSource is = new InputSource(new StringReader(input));
-            final Document dom3Doc = db.parse(is);
-
-            final DOMResult cleanedResult = new DOMResult();
-            final TransformerFactory tFactory = TransformerFactory.newInstance();
-            final Transformer transformer = tFactory.newTransformer(new DOMSource(db.parse(getCleanupTransformationStylesheet(hints))));
-            final DOMSource dSource = new DOMSource(dom3Doc);
-            transformer.transform(dSource, cleanedResult);
-            return (Document) cleanedResult.getNode();
-        } catch (final ParserConfigurationException | SAXException | IOException | TransformerException e) {
-            throw new ConversionException("Exception in cleaning up", e);
+            return TRANSFORMER_FACTORY.get().newTemplates(stylesheet);
+        } catch (final TransformerConfigurationException e) {
+            throw new ConversionException("Unable to compile cleanup XSLT sheet " + stylesheet.getSystemId(), e);
+        }
+    }
+
+    private static TransformerHandler createOutputHandler(final Templates templates, final Result output, final ConversionHints hints)
+            throws TransformerConfigurationException {
+        final TransformerHandler retval;
+        if (templates != null) {
+            retval = TRANSFORMER_FACTORY.get().newTransformerHandler(templates);
+        } else {
+            retval = TRANSFORMER_FACTORY.get().newTransformerHandler();
         }
+        if (output instanceof StreamResult) {
+            setStringOutputProperties(retval.getTransformer(), hints);
+        }
+        retval.setResult(output);
+        return retval;
+    }
+
+    private static void setStringOutputProperties(final Transformer transformer, final ConversionHints hints) {
+        //TODO: switch these on based on the ConversionHints:
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
     }
 
     protected abstract InputStream getCleanupTransformationStylesheet(final ConversionHints hints) throws ConversionException;
 
+    /**
+     * The location of the cleanup stylesheet. Serializers returning the location allow the stylesheet to be compiled
+     * with its location as the base URI and cached by it. By default null is returned, and the stylesheet is read from
+     * {@link #getCleanupTransformationStylesheet(ConversionHints)} instead.
+     *
+     * @param hints
+     *         conversion hints
+     *
+     * @return the stylesheet location, or null if not available
+     *
+     * @throws ConversionException
+     *         if the location cannot be resolved
+     */
+    protected URL getCleanupTransformationStylesheetLocation(final ConversionHints hints) throws ConversionException {
+        return null;
+    }
+
+    /**
+     * Creates the streaming cleanup filter used instead of the cleanup stylesheet unless the hint
+     * {@link IWXXMConversionHints#KEY_CLEANUP} requests the XSLT cleanup. The rules of the filter must match
+     * the ones in the stylesheet returned by {@link #getCleanupTransformationStylesheet(ConversionHints)}.
+     *
+     * @param hints
+     *         conversion hints
+     *
+     * @return a new filter instance
+     */
+    protected IWXXMCleanupFilter createCleanupFilter(final ConversionHints hints) {
+        return new IWXXMCleanupFilter();
+    }
+
+    /**
+     * The conversion hints affecting the cleanup transformation. The compiled cleanup stylesheets are cached
+     * by the stylesheet location and the values of these hints. By default no hints affect the cleanup.
+     *
+     * @return the relevant hint keys
+     */
+    protected List<ConversionHints.Key> getCleanupTransformationHintKeys() {
+        return Collections.emptyList();
+    }
+
     @SuppressWarnings("unchecked")
     protected void updateSamplingFeature(final Aerodrome input, final OMObservationType target, final String foiId, final String aerodromeId,
             final ConversionResult<?> result) {
@@ -1,33 +1,46 @@
 package fi.fmi.avi.converter.iwxxm;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
-import javax.xml.XMLConstants;
 import javax.xml.bind.Binder;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.UnmarshalException;
+import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.ValidationEvent;
 import javax.xml.bind.ValidationEventHandler;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
+import net.sf.saxon.s9api.SaxonApiException;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
-import fi.fmi.avi.converter.AviMessageSpecificConverter;
 import fi.fmi.avi.converter.ConversionException;
 import fi.fmi.avi.converter.ConversionHints;
 import fi.fmi.avi.converter.ConversionIssue;
@@ -40,9 +53,23 @@ import icao.iwxxm21.ReportType;
  * Created by rinne on 25/07/2018.
  */
 public abstract class AbstractJAXBIWXXMParser<T, S extends AviationWeatherMessageOrCollection> extends IWXXMConverterBase
-        implements AviMessageSpecificConverter<T, S> {
+        implements IWXXMBatchConverter<T, S> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractJAXBIWXXMParser.class);
+
+    private static final ThreadLocal<XMLInputFactory> XML_INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    });
 
-    private static Templates iwxxmTemplates;
+    private static final String IWXXM_SCHEMATRON_XSL = "schematron/xslt/int/icao/iwxxm/2.1.1/rule/iwxxm.xsl";
+    private static volatile Templates iwxxmTemplates;
+    private static volatile SchematronRuleEngine iwxxmSchematronRules;
+    private static final SchematronRuleSelection IWXXM_SCHEMATRON_SELECTION = new SchematronRuleSelection(
+            ReportType.class.getClassLoader().getResource(IWXXM_SCHEMATRON_XSL), AbstractJAXBIWXXMParser::getIwxxmTemplates,
+            AbstractJAXBIWXXMParser::getIwxxmSchematronRules);
 
     /**
      * Returns the TAF input message as A DOM Document.
@@ -85,21 +112,25 @@ public abstract class AbstractJAXBIWXXMParser<T, S extends AviationWeatherMessag
         ConversionResult<S> result = new ConversionResult<>();
         Object source;
         ReferredObjectRetrievalContext refCtx;
+        final Object validationLevel = getValidationLevel(hints, IWXXMConversionHints.VALUE_VALIDATION_LEVEL_SCHEMA_AND_SCHEMATRON);
 
         try {
-            Document dom = parseAsDom(input);
+            Supplier<StreamSource> streamSources = getStreamSources(input);
+            if (streamSources != null) {
+                convertStream(streamSources, result, validationLevel, hints);
+                return result;
+            }
 
-            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            IWXXMSchemaResourceResolver resolver = IWXXMSchemaResourceResolver.getInstance();
-            schemaFactory.setResourceResolver(resolver);
-            //Secure processing does not allow "file" protocol loading for schemas:
-            schemaFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, F_SECURE_PROCESSING);
-            Schema iwxxmSchema = schemaFactory.newSchema(ReportType.class.getResource("/int/icao/iwxxm/2.1.1/iwxxm.xsd"));
+            Document dom = parseAsDom(input);
 
+            //Binders are not pooled, see IWXXMConverterBase:
             Binder<Node> binder = getJAXBContext().createBinder();
 
             //XML Schema validation upon JAXB unmarshal:
-            binder.setSchema(iwxxmSchema);
+            if (includesSchemaValidation(validationLevel)) {
+                Schema iwxxmSchema = IWXXMSchemaRegistry.getSchema(IWXXMSchemaRegistry.SchemaSet.IWXXM);
+                binder.setSchema(iwxxmSchema);
+            }
             IWXXMValidationEventHandler collector = new IWXXMValidationEventHandler();
             binder.setEventHandler(collector);
             source = binder.unmarshal(dom);
@@ -112,18 +143,12 @@ public abstract class AbstractJAXBIWXXMParser<T, S extends AviationWeatherMessag
                 refCtx = new ReferredObjectRetrievalContext(dom, binder);
 
                 //Schematron validation:
-                result.addIssue(validateAgainstIWXXMSchematron(dom, hints));
-                try {
-                    result.setConvertedMessage(createPOJO(source, refCtx, result, hints));
-                } catch (IllegalStateException ise) {
-                    result.addIssue(new ConversionIssue(ConversionIssue.Severity.ERROR, ConversionIssue.Type.MISSING_DATA, "All mandatory information for "
-                            + "constructing a message object was not available", ise));
+                if (includesSchematronValidation(validationLevel)) {
+                    result.addIssue(validateAgainstIWXXMSchematron(dom, hints));
                 }
+                createAndSetPOJO(source, refCtx, result, hints);
             } else {
-                for (ValidationEvent evt : collector.getEvents()) {
-                    result.addIssue(
-                            new ConversionIssue(ConversionIssue.Type.SYNTAX, "XML Schema validation issue: " + evt.getMessage(), evt.getLinkedException()));
-                }
+                addSchemaValidationIssues(events, result);
             }
 
         } catch (ConversionException ce) {
@@ -137,6 +162,161 @@ public abstract class AbstractJAXBIWXXMParser<T, S extends AviationWeatherMessag
 
     }
 
+    /**
+     * Returns a supplier of sources for reading the input directly from a stream, if the input should be
+     * unmarshalled without building a DOM Document first. Each call of the supplier must return a new source
+     * for reading the entire input: the input is read once for unmarshalling, and once for the Schematron validation.
+     *
+     * The default implementation returns null, and the input is parsed using {@link #parseAsDom(Object)}.
+     *
+     * @param input
+     *         the input message
+     *
+     * @return supplier of sources for the input, or null if the input should be parsed as DOM
+     *
+     * @throws ConversionException
+     *         if the input cannot be read
+     */
+    protected Supplier<StreamSource> getStreamSources(final T input) throws ConversionException {
+        return null;
+    }
+
+    /**
+     * Returns sources for reading the given bytes, see {@link #getStreamSources(Object)}.
+     *
+     * @param input
+     *         the XML document bytes
+     *
+     * @return supplier of sources for the input
+     */
+    protected static Supplier<StreamSource> streamSourcesOf(final byte[] input) {
+        return () -> new StreamSource(new ByteArrayInputStream(input));
+    }
+
+    /**
+     * Returns sources for reading the contents of the given stream, see {@link #getStreamSources(Object)}.
+     * The stream is read fully into memory but not closed.
+     *
+     * @param input
+     *         the XML document stream
+     *
+     * @return supplier of sources for the input
+     *
+     * @throws ConversionException
+     *         if the stream cannot be read
+     */
+    protected static Supplier<StreamSource> streamSourcesOf(final InputStream input) throws ConversionException {
+        try {
+            return streamSourcesOf(IOUtils.toByteArray(input));
+        } catch (IOException e) {
+            throw new ConversionException("Error in reading input", e);
+        }
+    }
+
+    /**
+     * Returns sources for reading the contents of the given reader, see {@link #getStreamSources(Object)}.
+     * The reader is read fully into memory but not closed.
+     *
+     * @param input
+     *         the XML document reader
+     *
+     * @return supplier of sources for the input
+     *
+     * @throws ConversionException
+     *         if the reader cannot be read
+     */
+    protected static Supplier<StreamSource> streamSourcesOf(final Reader input) throws ConversionException {
+        try {
+            final String content = IOUtils.toString(input);
+            return () -> new StreamSource(new StringReader(content));
+        } catch (IOException e) {
+            throw new ConversionException("Error in reading input", e);
+        }
+    }
+
+    /*
+     * Unmarshals the input directly from a XMLStreamReader, validating against the XML Schema while reading
+     * unless disabled by the validation level.
+     * Only the minimal reference index needed by the scanners is collected on the way, see StreamReferredObjectRetrievalContext.
+     */
+    private void convertStream(final Supplier<StreamSource> streamSources, final ConversionResult<S> result, final Object validationLevel,
+            final ConversionHints hints) throws JAXBException, ConversionException {
+        final JAXBObjectPool<Unmarshaller> pool = getUnmarshallerPool(
+                includesSchemaValidation(validationLevel) ? IWXXMSchemaRegistry.SchemaSet.IWXXM : null);
+        final IWXXMValidationEventHandler collector = new IWXXMValidationEventHandler();
+
+        final Object source;
+        final StreamReferredObjectRetrievalContext.Indexer indexer;
+        final XMLStreamReader reader = createXMLStreamReader(streamSources.get());
+        final Unmarshaller unmarshaller = pool.borrow();
+        boolean completed = false;
+        try {
+            unmarshaller.setEventHandler(collector);
+            indexer = new StreamReferredObjectRetrievalContext.Indexer(reader);
+            unmarshaller.setListener(indexer.getListener());
+            source = unmarshaller.unmarshal(indexer);
+            completed = true;
+        } catch (UnmarshalException ue) {
+            //Not well-formed XML:
+            result.addIssue(new ConversionIssue(ConversionIssue.Type.SYNTAX, "Unable to parse input as an XML document", ue));
+            return;
+        } finally {
+            //Only return the Unmarshaller to the pool if it was not left in the middle of a document:
+            if (completed) {
+                unmarshaller.setListener(null);
+                unmarshaller.setEventHandler(null);
+                pool.release(unmarshaller);
+            }
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                //NOOP
+            }
+        }
+
+        final List<ValidationEvent> events = collector.getEvents();
+        if (events.isEmpty()) {
+            final ReferredObjectRetrievalContext refCtx = indexer.createRetrievalContext(getJAXBContext().createBinder());
+
+            //Schematron validation:
+            if (includesSchematronValidation(validationLevel)) {
+                result.addIssue(
+                        validateAgainstIWXXMSchematron(streamSources.get(), getJAXBContext().createJAXBIntrospector().getElementName(source), hints));
+            }
+            createAndSetPOJO(source, refCtx, result, hints);
+        } else {
+            addSchemaValidationIssues(events, result);
+        }
+    }
+
+    private static XMLStreamReader createXMLStreamReader(final StreamSource source) throws ConversionException {
+        try {
+            if (source.getInputStream() != null) {
+                return XML_INPUT_FACTORY.get().createXMLStreamReader(source.getInputStream());
+            } else {
+                return XML_INPUT_FACTORY.get().createXMLStreamReader(source.getReader());
+            }
+        } catch (XMLStreamException e) {
+            throw new ConversionException("Error in parsing input as to an XML document", e);
+        }
+    }
+
+    private void createAndSetPOJO(final Object source, final ReferredObjectRetrievalContext refCtx, final ConversionResult<S> result,
+            final ConversionHints hints) {
+        try {
+            result.setConvertedMessage(createPOJO(source, refCtx, result, hints));
+        } catch (IllegalStateException ise) {
+            result.addIssue(new ConversionIssue(ConversionIssue.Severity.ERROR, ConversionIssue.Type.MISSING_DATA, "All mandatory information for "
+                    + "constructing a message object was not available", ise));
+        }
+    }
+
+    private static void addSchemaValidationIssues(final List<ValidationEvent> events, final ConversionResult<?> result) {
+        for (ValidationEvent evt : events) {
+            result.addIssue(new ConversionIssue(ConversionIssue.Type.SYNTAX, "XML Schema validation issue: " + evt.getMessage(), evt.getLinkedException()));
+        }
+    }
+
     /**
      * Checks the DOM Document against the official IWXXM 2.1.1 Schematron validation rules.
      * Uses a pre-generated XLS transformation file producing the Schematron SVRL report.
@@ -149,22 +329,77 @@ public abstract class AbstractJAXBIWXXMParser<T, S extends AviationWeatherMessag
      * @return the list of Schematron validation issues (failed asserts)
      */
     protected static IssueList validateAgainstIWXXMSchematron(final Document input, final ConversionHints hints) {
-        XPath xPath = XPathFactory.newInstance().newXPath();
-        xPath.setNamespaceContext(new IWXXMNamespaceContext());
-        IssueList retval = new IssueList();
-        try {
-            DOMResult schematronOutput = new DOMResult();
-            Transformer transformer = getIwxxmTemplates().newTransformer();
-            DOMSource dSource = new DOMSource(input);
-            transformer.transform(dSource, schematronOutput);
-            NodeList failedAsserts = (NodeList) xPath.evaluate("//svrl:failed-assert/svrl:text", schematronOutput.getNode(), XPathConstants.NODESET);
-            if (failedAsserts != null) {
-                for (int i = 0; i < failedAsserts.getLength(); i++) {
-                    Node node = failedAsserts.item(i).getFirstChild();
-                    retval.add(ConversionIssue.Severity.ERROR, ConversionIssue.Type.SYNTAX, "Failed Schematron assertation: " + node.getNodeValue());
+        return validateAgainstIWXXMSchematron(new DOMSource(input), hints);
+    }
+
+    /**
+     * Checks the XML document source against the official IWXXM 2.1.1 Schematron validation rules.
+     * The root element is determined from DOM sources, for other sources the full rule set is used,
+     * see {@link #validateAgainstIWXXMSchematron(Source, QName, ConversionHints)}.
+     *
+     * @param input
+     *         IWXXM message source
+     * @param hints
+     *         conversion hints to guide the validaton
+     *
+     * @return the list of Schematron validation issues (failed asserts)
+     */
+    protected static IssueList validateAgainstIWXXMSchematron(final Source input, final ConversionHints hints) {
+        QName rootElement = null;
+        if (input instanceof DOMSource && ((DOMSource) input).getNode() != null) {
+            final Node node = ((DOMSource) input).getNode();
+            final Element root = node instanceof Document ? ((Document) node).getDocumentElement() : node instanceof Element ? (Element) node : null;
+            if (root != null) {
+                rootElement = new QName(root.getNamespaceURI(), root.getLocalName());
+            }
+        }
+        return validateAgainstIWXXMSchematron(input, rootElement, hints);
+    }
+
+    /**
+     * Checks the XML document source against the official IWXXM 2.1.1 Schematron validation rules.
+     *
+     * Unless the full rule set is requested with {@link IWXXMConversionHints#KEY_SCHEMATRON_RULES} or
+     * {@link IWXXMConversionHints#VALUE_VALIDATION_LEVEL_FULL}, only the rules relevant for the message type given by
+     * the root element are evaluated. Also used for validating the serialized documents and bulletins.
+     *
+     * @param input
+     *         IWXXM message source
+     * @param rootElement
+     *         the root element of the document, or null if not known
+     * @param hints
+     *         conversion hints to guide the validaton
+     *
+     * @return the list of Schematron validation issues (failed asserts)
+     *
+     * @see #validateAgainstIWXXMSchematron(Document, ConversionHints)
+     */
+    public static IssueList validateAgainstIWXXMSchematron(final Source input, final QName rootElement, final ConversionHints hints) {
+        final boolean allRules = IWXXMConversionHints.VALUE_SCHEMATRON_RULES_ALL.equals(
+                IWXXMConversionHints.getOrDefault(hints, IWXXMConversionHints.KEY_SCHEMATRON_RULES, IWXXMConversionHints.VALUE_SCHEMATRON_RULES_BY_MESSAGE_TYPE))
+                || IWXXMConversionHints.VALUE_VALIDATION_LEVEL_FULL.equals(getValidationLevel(hints, null));
+        final QName selectionRoot = allRules ? null : rootElement;
+        if (IWXXMConversionHints.VALUE_SCHEMATRON_ENGINE_NATIVE.equals(
+                IWXXMConversionHints.getOrDefault(hints, IWXXMConversionHints.KEY_SCHEMATRON_ENGINE, IWXXMConversionHints.VALUE_SCHEMATRON_ENGINE_XSLT))) {
+            final SchematronRuleEngine rules = IWXXM_SCHEMATRON_SELECTION.getRules(selectionRoot);
+            if (rules.isSupported()) {
+                final IssueList retval = new IssueList();
+                try {
+                    for (final String failedAssert : rules.validate(input)) {
+                        retval.add(ConversionIssue.Severity.ERROR, ConversionIssue.Type.SYNTAX, "Failed Schematron assertation: " + failedAssert);
+                    }
+                } catch (final SaxonApiException e) {
+                    throw new RuntimeException("Unable to apply the IWXXM Schematron validation rules to the document to validate", e);
                 }
+                return retval;
             }
-        } catch (TransformerException | XPathExpressionException e) {
+        }
+        IssueList retval = new IssueList();
+        try {
+            //The SVRL report is consumed as it is produced, without building a DOM of it:
+            Transformer transformer = IWXXMBatchContext.transformer(IWXXM_SCHEMATRON_SELECTION.getTemplates(selectionRoot));
+            transformer.transform(input, new SAXResult(new FailedAssertCollector(retval)));
+        } catch (TransformerException e) {
             throw new RuntimeException("Unable to apply XSLT pre-compiled Schematron validation rules to the document to validate", e);
         }
         return retval;
@@ -175,19 +410,113 @@ public abstract class AbstractJAXBIWXXMParser<T, S extends AviationWeatherMessag
        for running the XSL transformations required for IWXXM Schematron
        validation. This makes each validation 3-4 times faster.
    */
-    private synchronized static Templates getIwxxmTemplates() {
-        if (iwxxmTemplates == null) {
-            TransformerFactory tFactory = TransformerFactory.newInstance();
+    static Templates getIwxxmTemplates() {
+        Templates retval = iwxxmTemplates;
+        if (retval == null) {
+            synchronized (AbstractJAXBIWXXMParser.class) {
+                retval = iwxxmTemplates;
+                if (retval == null) {
+                    TransformerFactory tFactory = TransformerFactory.newInstance();
+                    try {
+                        retval = tFactory.newTemplates(new StreamSource(ReportType.class.getClassLoader().getResourceAsStream(IWXXM_SCHEMATRON_XSL)));
+                    } catch (Exception e) {
+                        throw new RuntimeException("Unable to read XSL file for IWXXM 2.1.1 Schematron validation, make sure the the file exists in "
+                                + " classpath " + "location 'schematron/xslt/int/icao/iwxxm/2.1.1/rule/iwxxm.xsl' ");
+                    }
+                    iwxxmTemplates = retval;
+                }
+            }
+        }
+        return retval;
+    }
+
+    /*
+       The compiled Schematron XSLT with only the rules relevant for the message
+       type of the given root element, see SchematronRuleSelection.
+   */
+    static Templates getIwxxmTemplates(final QName rootElement) {
+        return IWXXM_SCHEMATRON_SELECTION.getTemplates(rootElement);
+    }
 
-            try {
-                iwxxmTemplates = tFactory.newTemplates(
-                        new StreamSource(ReportType.class.getClassLoader().getResourceAsStream("schematron/xslt/int/icao/iwxxm/2.1.1/rule/iwxxm.xsl")));
-            } catch (Exception e) {
-                throw new RuntimeException("Unable to read XSL file for IWXXM 2.1.1 Schematron validation, make sure the the file exists in " + " classpath "
-                        + "location 'schematron/xslt/int/icao/iwxxm/2.1.1/rule/iwxxm.xsl' ");
+    /*
+       The IWXXM Schematron rules for the native rule engine, extracted once
+       from the same XSLT file as used for the XSLT validation.
+   */
+    static SchematronRuleEngine getIwxxmSchematronRules() {
+        SchematronRuleEngine retval = iwxxmSchematronRules;
+        if (retval == null) {
+            synchronized (AbstractJAXBIWXXMParser.class) {
+                retval = iwxxmSchematronRules;
+                if (retval == null) {
+                    try {
+                        retval = SchematronRuleEngine.compile(ReportType.class.getClassLoader().getResource(IWXXM_SCHEMATRON_XSL));
+                    } catch (Exception e) {
+                        throw new RuntimeException("Unable to read XSL file for IWXXM 2.1.1 Schematron validation, make sure the the file exists in "
+                                + " classpath " + "location 'schematron/xslt/int/icao/iwxxm/2.1.1/rule/iwxxm.xsl' ", e);
+                    }
+                    if (!retval.isSupported()) {
+                        LOG.warn("Native IWXXM Schematron rule engine not available, using the XSLT instead: {}", retval.getUnsupportedReason());
+                    }
+                    iwxxmSchematronRules = retval;
+                }
+            }
+        }
+        return retval;
+    }
+
+    /*
+       The native IWXXM Schematron rules relevant for the message type
+       of the given root element, see SchematronRuleSelection.
+   */
+    static SchematronRuleEngine getIwxxmSchematronRules(final QName rootElement) {
+        return IWXXM_SCHEMATRON_SELECTION.getRules(rootElement);
+    }
+
+    /*
+     * Collects the texts of the svrl:failed-assert elements of the streamed SVRL report as issues.
+     */
+    private static class FailedAssertCollector extends DefaultHandler {
+        private static final String SVRL_NS = "http://purl.oclc.org/dsdl/svrl";
+
+        private final IssueList issues;
+        private final StringBuilder text = new StringBuilder();
+        private int failedAssertDepth = 0;
+        private int textDepth = 0;
+
+        FailedAssertCollector(final IssueList issues) {
+            this.issues = issues;
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) {
+            if (SVRL_NS.equals(uri) && "failed-assert".equals(localName)) {
+                failedAssertDepth++;
+            } else if (failedAssertDepth > 0 && SVRL_NS.equals(uri) && "text".equals(localName)) {
+                if (textDepth == 0) {
+                    text.setLength(0);
+                }
+                textDepth++;
+            }
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) {
+            if (SVRL_NS.equals(uri) && "failed-assert".equals(localName)) {
+                failedAssertDepth--;
+            } else if (textDepth > 0 && SVRL_NS.equals(uri) && "text".equals(localName)) {
+                textDepth--;
+                if (textDepth == 0) {
+                    issues.add(ConversionIssue.Severity.ERROR, ConversionIssue.Type.SYNTAX, "Failed Schematron assertation: " + text);
+                }
+            }
+        }
+
+        @Override
+        public void characters(final char[] ch, final int start, final int length) {
+            if (textDepth > 0) {
+                text.append(ch, start, length);
             }
         }
-        return iwxxmTemplates;
     }
 
     private static class IWXXMValidationEventHandler implements ValidationEventHandler {
@@ -0,0 +1,300 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import fi.fmi.avi.converter.AviMessageConverter;
+import fi.fmi.avi.converter.ConversionHints;
+import fi.fmi.avi.converter.ConversionResult;
+import fi.fmi.avi.converter.ConversionSpecification;
+
+/**
+ * An asynchronous facade for running the conversions of an {@link AviMessageConverter}, such as one configured with
+ * the {@link fi.fmi.avi.converter.iwxxm.conf.IWXXMConverter} beans, on an executor.
+ *
+ * The number of conversions submitted but not yet completed is limited. When the limit is reached,
+ * {@link #convertMessage(Object, ConversionSpecification, ConversionHints)} blocks the calling thread until one of the
+ * running conversions completes, while {@link #tryConvertMessage(Object, ConversionSpecification, ConversionHints)}
+ * returns immediately with a future failed with a {@link RejectedExecutionException}. The non-blocking variant is meant
+ * for callers that must not block, such as event loop threads, which should retry or shed the load on rejection.
+ * The facade records the queueing time of each conversion, measured from the submission (including any wait for the
+ * limit) to the start of the conversion in the executor.
+ *
+ * If no executor is given, the conversions are run on a pool of daemon threads, one per available processor. Such a
+ * default executor is shut down by {@link #close()}.
+ */
+public class AsyncIWXXMConverter implements AutoCloseable {
+    private final AviMessageConverter converter;
+    private final Executor executor;
+    private final ExecutorService ownExecutor;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalQueueingNanos = new LongAdder();
+    private final LongAccumulator maxQueueingNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Creates a facade running the conversions on the default executor.
+     *
+     * @param converter
+     *         the converter to run the conversions with
+     * @param maxInFlight
+     *         the maximum number of conversions submitted but not yet completed
+     */
+    public AsyncIWXXMConverter(final AviMessageConverter converter, final int maxInFlight) {
+        this(converter, null, maxInFlight);
+    }
+
+    /**
+     * Creates a facade running the conversions on the given executor.
+     *
+     * @param converter
+     *         the converter to run the conversions with
+     * @param executor
+     *         the executor to run the conversions on, or null to use the default executor
+     * @param maxInFlight
+     *         the maximum number of conversions submitted but not yet completed
+     */
+    public AsyncIWXXMConverter(final AviMessageConverter converter, final Executor executor, final int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.converter = Objects.requireNonNull(converter, "converter");
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        if (executor == null) {
+            this.ownExecutor = newDefaultExecutor();
+            this.executor = this.ownExecutor;
+        } else {
+            this.ownExecutor = null;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Submits a conversion with no conversion hints.
+     *
+     * @see #convertMessage(Object, ConversionSpecification, ConversionHints)
+     */
+    public <T, S> CompletableFuture<ConversionResult<S>> convertMessage(final T input, final ConversionSpecification<T, S> spec) {
+        return convertMessage(input, spec, ConversionHints.EMPTY);
+    }
+
+    /**
+     * Submits a conversion to the executor. Blocks until the number of conversions in flight is below the limit.
+     *
+     * @param input
+     *         the message to convert
+     * @param spec
+     *         the conversion to run
+     * @param hints
+     *         the conversion hints
+     * @param <T>
+     *         the input type
+     * @param <S>
+     *         the output type
+     *
+     * @return a future completed with the conversion result, or exceptionally if the conversion throws an exception,
+     * the executor rejects the conversion or the calling thread is interrupted while waiting for the limit
+     *
+     * @see #tryConvertMessage(Object, ConversionSpecification, ConversionHints)
+     */
+    public <T, S> CompletableFuture<ConversionResult<S>> convertMessage(final T input, final ConversionSpecification<T, S> spec,
+            final ConversionHints hints) {
+        final long submitTime = System.nanoTime();
+        final CompletableFuture<ConversionResult<S>> retval = new CompletableFuture<>();
+        try {
+            this.inFlight.acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            retval.completeExceptionally(e);
+            return retval;
+        }
+        submit(input, spec, hints, submitTime, retval);
+        return retval;
+    }
+
+    /**
+     * Submits a conversion with no conversion hints without blocking.
+     *
+     * @see #tryConvertMessage(Object, ConversionSpecification, ConversionHints)
+     */
+    public <T, S> CompletableFuture<ConversionResult<S>> tryConvertMessage(final T input, final ConversionSpecification<T, S> spec) {
+        return tryConvertMessage(input, spec, ConversionHints.EMPTY);
+    }
+
+    /**
+     * Submits a conversion to the executor without blocking. If the number of conversions in flight is at the limit,
+     * the conversion is not run and the returned future is already failed with a {@link RejectedExecutionException}.
+     *
+     * @param input
+     *         the message to convert
+     * @param spec
+     *         the conversion to run
+     * @param hints
+     *         the conversion hints
+     * @param <T>
+     *         the input type
+     * @param <S>
+     *         the output type
+     *
+     * @return a future completed with the conversion result, or exceptionally if the conversion throws an exception,
+     * the limit is reached or the executor rejects the conversion
+     *
+     * @see #convertMessage(Object, ConversionSpecification, ConversionHints)
+     */
+    public <T, S> CompletableFuture<ConversionResult<S>> tryConvertMessage(final T input, final ConversionSpecification<T, S> spec,
+            final ConversionHints hints) {
+        final long submitTime = System.nanoTime();
+        final CompletableFuture<ConversionResult<S>> retval = new CompletableFuture<>();
+        if (!this.inFlight.tryAcquire()) {
+            this.rejected.increment();
+            retval.completeExceptionally(new RejectedExecutionException("Limit of " + this.maxInFlight + " conversions in flight reached"));
+            return retval;
+        }
+        submit(input, spec, hints, submitTime, retval);
+        return retval;
+    }
+
+    //Called with a permit acquired:
+    private <T, S> void submit(final T input, final ConversionSpecification<T, S> spec, final ConversionHints hints, final long submitTime,
+            final CompletableFuture<ConversionResult<S>> future) {
+        this.submitted.increment();
+        try {
+            this.executor.execute(() -> this.run(input, spec, hints, submitTime, future));
+        } catch (final RejectedExecutionException e) {
+            this.submitted.decrement();
+            this.inFlight.release();
+            this.failed.increment();
+            future.completeExceptionally(e);
+        }
+    }
+
+    private <T, S> void run(final T input, final ConversionSpecification<T, S> spec, final ConversionHints hints, final long submitTime,
+            final CompletableFuture<ConversionResult<S>> future) {
+        final long queueingNanos = System.nanoTime() - submitTime;
+        this.started.increment();
+        this.totalQueueingNanos.add(queueingNanos);
+        this.maxQueueingNanos.accumulate(queueingNanos);
+        ConversionResult<S> result = null;
+        Throwable failure = null;
+        try {
+            result = this.converter.convertMessage(input, spec, hints);
+        } catch (final Throwable t) {
+            failure = t;
+        }
+        //Released before completing, so that the dependent stages run in this thread may submit new conversions:
+        this.inFlight.release();
+        if (failure == null) {
+            this.completed.increment();
+            future.complete(result);
+        } else {
+            this.failed.increment();
+            future.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * @return the maximum number of conversions in flight
+     */
+    public int getMaxInFlight() {
+        return this.maxInFlight;
+    }
+
+    /**
+     * @return the number of conversions submitted but not yet completed
+     */
+    public int getInFlight() {
+        return this.maxInFlight - this.inFlight.availablePermits();
+    }
+
+    /**
+     * @return the number of conversions accepted for running
+     */
+    public long getSubmitted() {
+        return this.submitted.sum();
+    }
+
+    /**
+     * @return the number of conversions completed with a result
+     */
+    public long getCompleted() {
+        return this.completed.sum();
+    }
+
+    /**
+     * @return the number of conversions failed with an exception or rejected by the executor
+     */
+    public long getFailed() {
+        return this.failed.sum();
+    }
+
+    /**
+     * @return the number of conversions not run by {@link #tryConvertMessage(Object, ConversionSpecification, ConversionHints)}
+     * because the limit of conversions in flight was reached
+     */
+    public long getRejected() {
+        return this.rejected.sum();
+    }
+
+    /**
+     * @return the average queueing time of the started conversions, or zero if none have been started
+     */
+    public Duration getAverageQueueingTime() {
+        final long count = this.started.sum();
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(this.totalQueueingNanos.sum() / count);
+    }
+
+    /**
+     * @return the longest queueing time of the started conversions
+     */
+    public Duration getMaxQueueingTime() {
+        return Duration.ofNanos(this.maxQueueingNanos.get());
+    }
+
+    /**
+     * Shuts down the default executor, if used. The already submitted conversions are completed.
+     * An executor given by the caller is not shut down.
+     */
+    @Override
+    public void close() {
+        if (this.ownExecutor != null) {
+            this.ownExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncIWXXMConverter[inFlight=" + this.getInFlight() + "/" + this.maxInFlight + ", completed=" + this.getCompleted() + ", failed="
+                + this.getFailed() + ", rejected=" + this.getRejected() + ", averageQueueingTime=" + this.getAverageQueueingTime() + ", maxQueueingTime="
+                + this.getMaxQueueingTime() + "]";
+    }
+
+    /*
+     * A bounded pool of platform threads: the conversions keep per-thread caches of XML processing objects
+     * (transformer factories, StAX input factories, batch contexts), which are reused only as long as the threads are.
+     */
+    static ExecutorService newDefaultExecutor() {
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ThreadFactory threadFactory = runnable -> {
+            final Thread thread = new Thread(runnable, "iwxxm-async-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), threadFactory);
+    }
+}
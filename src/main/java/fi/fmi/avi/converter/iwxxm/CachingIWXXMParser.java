@@ -0,0 +1,330 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.commons.io.IOUtils;
+import org.w3c.dom.Document;
+
+import fi.fmi.avi.converter.AviMessageSpecificConverter;
+import fi.fmi.avi.converter.ConversionHints;
+import fi.fmi.avi.converter.ConversionIssue;
+import fi.fmi.avi.converter.ConversionResult;
+
+/**
+ * A parser decorator caching the conversion results of repeated inputs, such as duplicate or retransmitted
+ * IWXXM documents.
+ *
+ * The cache key is the SHA-256 hash of the normalized input together with the conversion hints. Only the differences
+ * the XML parser also ignores are normalized: CR LF and CR line endings are converted to LF, as in XML end-of-line
+ * handling. Any other difference, such as a byte order mark or white space before the XML declaration, makes a
+ * different key, so a cached result is never returned for an input the parser would treat differently. Inputs given as String, byte[],
+ * InputStream, Reader and DOM Document are supported, any other inputs are passed to the parser without caching.
+ * Streams and readers are read fully into memory for hashing, and the parser is given a new stream or reader of
+ * the same content.
+ *
+ * The cache is a bounded LRU cache. The size of each entry is estimated by the size of the normalized input, and the
+ * least recently used entries are evicted when the total estimated size exceeds the given maximum. Entries older than
+ * the given time-to-live are not returned. Each call returns a new ConversionResult with the cached status, issues and
+ * (immutable) converted message, so the callers cannot modify the cached results. The cache keeps counts of the hits,
+ * misses, evictions and expirations for monitoring.
+ *
+ * @param <T>
+ *         the input type
+ * @param <S>
+ *         the output type
+ */
+public class CachingIWXXMParser<T, S> implements IWXXMBatchConverter<T, S> {
+    //TransformerFactory instances are not guaranteed to be thread-safe:
+    private static final ThreadLocal<TransformerFactory> TRANSFORMER_FACTORY = ThreadLocal.withInitial(TransformerFactory::newInstance);
+
+    private final AviMessageSpecificConverter<T, S> delegate;
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<Key, Entry<S>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param delegate
+     *         the parser to cache the results of
+     * @param maxWeight
+     *         the maximum total size of the cached inputs in bytes
+     * @param ttl
+     *         the time-to-live of the cached results
+     */
+    public CachingIWXXMParser(final AviMessageSpecificConverter<T, S> delegate, final long maxWeight, final Duration ttl) {
+        this(delegate, maxWeight, ttl, System::nanoTime);
+    }
+
+    CachingIWXXMParser(final AviMessageSpecificConverter<T, S> delegate, final long maxWeight, final Duration ttl, final LongSupplier nanoClock) {
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("maxWeight must be positive");
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        this.delegate = Objects.requireNonNull(delegate, "delegate");
+        this.maxWeight = maxWeight;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ConversionResult<S> convertMessage(final T input, final ConversionHints hints) {
+        final byte[] content;
+        final T parserInput;
+        try {
+            if (input instanceof String) {
+                content = normalize(((String) input).getBytes(StandardCharsets.UTF_8));
+                parserInput = input;
+            } else if (input instanceof byte[]) {
+                content = normalize((byte[]) input);
+                parserInput = input;
+            } else if (input instanceof InputStream) {
+                final byte[] bytes = IOUtils.toByteArray((InputStream) input);
+                content = normalize(bytes);
+                parserInput = (T) new ByteArrayInputStream(bytes);
+            } else if (input instanceof Reader) {
+                final String str = IOUtils.toString((Reader) input);
+                content = normalize(str.getBytes(StandardCharsets.UTF_8));
+                parserInput = (T) new StringReader(str);
+            } else if (input instanceof Document) {
+                content = normalize(serialize((Document) input));
+                parserInput = input;
+            } else {
+                return this.delegate.convertMessage(input, hints);
+            }
+        } catch (final IOException | TransformerException e) {
+            final ConversionResult<S> result = new ConversionResult<>();
+            result.addIssue(new ConversionIssue(ConversionIssue.Type.SYNTAX, "Unable to read input", e));
+            return result;
+        }
+
+        final Key key = new Key(sha256(content), hints);
+        final Entry<S> cached = this.get(key);
+        if (cached != null) {
+            this.hits.increment();
+            return cached.copyResult();
+        }
+        this.misses.increment();
+        final ConversionResult<S> result = this.delegate.convertMessage(parserInput, hints);
+        this.put(key, new Entry<>(result, content.length, this.nanoClock.getAsLong()));
+        return copy(result);
+    }
+
+    /**
+     * Removes all the cached results.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.weight = 0;
+    }
+
+    /**
+     * @return the number of conversions served from the cache
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return the number of conversions not found in the cache, including the expired ones
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return the number of results evicted for keeping the cache within its maximum size
+     */
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * @return the number of results removed because their time-to-live had passed
+     */
+    public long getExpirations() {
+        return this.expirations.sum();
+    }
+
+    /**
+     * @return the number of cached results
+     */
+    public synchronized int getSize() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return the estimated total size of the cached results in bytes
+     */
+    public synchronized long getWeight() {
+        return this.weight;
+    }
+
+    @Override
+    public String toString() {
+        return "CachingIWXXMParser[hits=" + this.getHits() + ", misses=" + this.getMisses() + ", evictions=" + this.getEvictions() + ", expirations="
+                + this.getExpirations() + ", size=" + this.getSize() + ", weight=" + this.getWeight() + "]";
+    }
+
+    private synchronized Entry<S> get(final Key key) {
+        final Entry<S> retval = this.entries.get(key);
+        if (retval != null && this.nanoClock.getAsLong() - retval.created > this.ttlNanos) {
+            this.entries.remove(key);
+            this.weight -= retval.weight;
+            this.expirations.increment();
+            return null;
+        }
+        return retval;
+    }
+
+    private synchronized void put(final Key key, final Entry<S> entry) {
+        if (entry.weight > this.maxWeight) {
+            return;
+        }
+        final Entry<S> previous = this.entries.put(key, entry);
+        if (previous != null) {
+            this.weight -= previous.weight;
+        }
+        this.weight += entry.weight;
+        final Iterator<Entry<S>> lru = this.entries.values().iterator();
+        while (this.weight > this.maxWeight && lru.hasNext()) {
+            final Entry<S> eldest = lru.next();
+            lru.remove();
+            this.weight -= eldest.weight;
+            this.evictions.increment();
+        }
+    }
+
+    private static <S> ConversionResult<S> copy(final ConversionResult<S> source) {
+        final ConversionResult<S> retval = new ConversionResult<>();
+        for (final ConversionIssue issue : source.getConversionIssues()) {
+            retval.addIssue(issue);
+        }
+        source.getConvertedMessage().ifPresent(retval::setConvertedMessage);
+        retval.setStatus(source.getStatus());
+        return retval;
+    }
+
+    /*
+     * Converts CR LF and CR line endings to LF. The bytes are only modified if the encoding is known to be ASCII
+     * compatible (starting with '<' or the UTF-8 byte order mark), in other encodings such as UTF-16 the CR and LF
+     * bytes may be a part of other characters, and the input is returned as is.
+     */
+    static byte[] normalize(final byte[] input) {
+        if (!isAsciiCompatible(input)) {
+            return input;
+        }
+        final byte[] retval = new byte[input.length];
+        int length = 0;
+        for (int i = 0; i < input.length; i++) {
+            if (input[i] == '\r') {
+                retval[length++] = '\n';
+                if (i + 1 < input.length && input[i + 1] == '\n') {
+                    i++;
+                }
+            } else {
+                retval[length++] = input[i];
+            }
+        }
+        return length == retval.length ? retval : Arrays.copyOf(retval, length);
+    }
+
+    private static boolean isAsciiCompatible(final byte[] input) {
+        return (input.length >= 1 && input[0] == '<') || (input.length >= 3 && input[0] == (byte) 0xEF && input[1] == (byte) 0xBB
+                && input[2] == (byte) 0xBF);
+    }
+
+    private static byte[] serialize(final Document input) throws TransformerException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Transformer transformer = TRANSFORMER_FACTORY.get().newTransformer();
+        transformer.transform(new DOMSource(input), new StreamResult(out));
+        return out.toByteArray();
+    }
+
+    private static byte[] sha256(final byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class Key {
+        private final byte[] hash;
+        private final Map<Object, Object> hints;
+        private final int hashCode;
+
+        Key(final byte[] hash, final ConversionHints hints) {
+            this.hash = hash;
+            this.hints = hints == null ? null : new HashMap<>(hints);
+            this.hashCode = 31 * Arrays.hashCode(hash) + (this.hints == null || this.hints.isEmpty() ? 0 : this.hints.hashCode());
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return Arrays.equals(this.hash, other.hash) && Objects.equals(emptyToNull(this.hints), emptyToNull(other.hints));
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        private static Map<Object, Object> emptyToNull(final Map<Object, Object> map) {
+            return map == null || map.isEmpty() ? null : map;
+        }
+    }
+
+    private static final class Entry<S> {
+        private final ConversionResult<S> result;
+        private final long weight;
+        private final long created;
+
+        Entry(final ConversionResult<S> result, final long weight, final long created) {
+            this.result = copy(result);
+            this.weight = weight;
+            this.created = created;
+        }
+
+        ConversionResult<S> copyResult() {
+            return copy(this.result);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathFactory;
+
+import fi.fmi.avi.converter.AviMessageSpecificConverter;
+import fi.fmi.avi.converter.ConversionHints;
+import fi.fmi.avi.converter.ConversionResult;
+
+/**
+ * The XML processing objects shared by the conversions of a batch, see {@link IWXXMBatchConverter}.
+ *
+ * A batch context is bound to the thread running the batch (or a part of it). While a context is bound, the static
+ * getters of this class return the DOM builder, XPath and transformer instances of the context, reset to their initial
+ * state, instead of creating new ones for each conversion. Outside a batch, new instances are returned on each call.
+ * The returned instances are not thread-safe, and must not be kept after the conversion step they were requested for.
+ */
+public final class IWXXMBatchContext {
+    private static final ThreadLocal<IWXXMBatchContext> CURRENT = new ThreadLocal<>();
+    //Tasks per available processor when converting in parallel, for balancing uneven conversion times:
+    private static final int TASKS_PER_PROCESSOR = 4;
+
+    private DocumentBuilder documentBuilder;
+    private XPath xpath;
+    private Transformer identityTransformer;
+    private final Map<Templates, Transformer> transformers = new IdentityHashMap<>();
+
+    private IWXXMBatchContext() {
+    }
+
+    /**
+     * Returns a namespace aware DOM builder.
+     *
+     * @return the DOM builder
+     *
+     * @throws ParserConfigurationException
+     *         if the builder cannot be created
+     */
+    public static DocumentBuilder documentBuilder() throws ParserConfigurationException {
+        final IWXXMBatchContext ctx = CURRENT.get();
+        if (ctx == null) {
+            return newDocumentBuilder();
+        }
+        if (ctx.documentBuilder == null) {
+            ctx.documentBuilder = newDocumentBuilder();
+        } else {
+            ctx.documentBuilder.reset();
+        }
+        return ctx.documentBuilder;
+    }
+
+    /**
+     * Returns an XPath evaluator without a namespace context.
+     *
+     * @return the XPath evaluator
+     */
+    public static XPath xpath() {
+        final IWXXMBatchContext ctx = CURRENT.get();
+        if (ctx == null) {
+            return XPathFactory.newInstance().newXPath();
+        }
+        if (ctx.xpath == null) {
+            ctx.xpath = XPathFactory.newInstance().newXPath();
+        } else {
+            ctx.xpath.reset();
+        }
+        return ctx.xpath;
+    }
+
+    /**
+     * Returns an identity transformer without any output properties set.
+     *
+     * @return the transformer
+     *
+     * @throws TransformerConfigurationException
+     *         if the transformer cannot be created
+     */
+    public static Transformer identityTransformer() throws TransformerConfigurationException {
+        final IWXXMBatchContext ctx = CURRENT.get();
+        if (ctx == null) {
+            return TransformerFactory.newInstance().newTransformer();
+        }
+        if (ctx.identityTransformer == null) {
+            ctx.identityTransformer = TransformerFactory.newInstance().newTransformer();
+        } else {
+            ctx.identityTransformer.reset();
+        }
+        return ctx.identityTransformer;
+    }
+
+    /**
+     * Returns a transformer for the given compiled stylesheet.
+     *
+     * @param templates
+     *         the compiled stylesheet
+     *
+     * @return the transformer
+     *
+     * @throws TransformerConfigurationException
+     *         if the transformer cannot be created
+     */
+    public static Transformer transformer(final Templates templates) throws TransformerConfigurationException {
+        final IWXXMBatchContext ctx = CURRENT.get();
+        if (ctx == null) {
+            return templates.newTransformer();
+        }
+        Transformer retval = ctx.transformers.get(templates);
+        if (retval == null) {
+            retval = templates.newTransformer();
+            ctx.transformers.put(templates, retval);
+        } else {
+            retval.reset();
+        }
+        return retval;
+    }
+
+    /**
+     * Runs the given task with a batch context bound to the current thread. If the thread is already running
+     * a batch, the task uses the context of that batch.
+     *
+     * @param task
+     *         the task to run
+     * @param <R>
+     *         the task result type
+     *
+     * @return the result of the task
+     */
+    public static <R> R runInBatch(final Supplier<R> task) {
+        if (CURRENT.get() != null) {
+            return task.get();
+        }
+        CURRENT.set(new IWXXMBatchContext());
+        try {
+            return task.get();
+        } finally {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Converts the inputs with the given converter, see {@link IWXXMBatchConverter#convertBatch(List, ConversionHints, Executor)}.
+     * The calling thread takes part in the conversion: it converts the parts of the batch not yet started by the executor,
+     * so the executor may also be one the calling thread belongs to.
+     *
+     * @param converter
+     *         the converter to use
+     * @param inputs
+     *         the messages to convert
+     * @param hints
+     *         the conversion hints used for all the messages
+     * @param executor
+     *         the executor to convert the messages on, or null to convert them in the calling thread
+     * @param <T>
+     *         the input type
+     * @param <S>
+     *         the output type
+     *
+     * @return the conversion results in the order of the inputs
+     */
+    public static <T, S> List<ConversionResult<S>> convertBatch(final AviMessageSpecificConverter<T, S> converter, final List<T> inputs,
+            final ConversionHints hints, final Executor executor) {
+        Objects.requireNonNull(inputs, "inputs");
+        if (executor == null || inputs.size() < 2) {
+            return runInBatch(() -> convertAll(converter, inputs, hints));
+        }
+        final int tasks = Math.min(inputs.size(), Runtime.getRuntime().availableProcessors() * TASKS_PER_PROCESSOR);
+        final int chunkSize = (inputs.size() + tasks - 1) / tasks;
+        final List<FutureTask<List<ConversionResult<S>>>> chunks = new ArrayList<>(tasks);
+        for (int start = 0; start < inputs.size(); start += chunkSize) {
+            final List<T> chunk = inputs.subList(start, Math.min(start + chunkSize, inputs.size()));
+            final FutureTask<List<ConversionResult<S>>> task = new FutureTask<>(() -> runInBatch(() -> convertAll(converter, chunk, hints)));
+            chunks.add(task);
+            try {
+                executor.execute(task);
+            } catch (final RejectedExecutionException e) {
+                //Run by the calling thread below
+            }
+        }
+        //The calling thread runs the chunks not yet started by the executor, and then only waits for the chunks already
+        //running. This cannot deadlock even if the calling thread is a worker of the same bounded executor, such as when
+        //converting the messages of bulletins which are themselves converted in a batch on the executor.
+        for (final FutureTask<List<ConversionResult<S>>> chunk : chunks) {
+            chunk.run();
+        }
+        final List<ConversionResult<S>> retval = new ArrayList<>(inputs.size());
+        try {
+            for (final FutureTask<List<ConversionResult<S>>> chunk : chunks) {
+                retval.addAll(chunk.get());
+            }
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException("Batch conversion failed", e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the batch conversion", e);
+        }
+        return retval;
+    }
+
+    private static <T, S> List<ConversionResult<S>> convertAll(final AviMessageSpecificConverter<T, S> converter, final List<T> inputs,
+            final ConversionHints hints) {
+        final List<ConversionResult<S>> retval = new ArrayList<>(inputs.size());
+        for (final T input : inputs) {
+            retval.add(converter.convertMessage(input, hints));
+        }
+        return retval;
+    }
+
+    private static DocumentBuilder newDocumentBuilder() throws ParserConfigurationException {
+        final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        dbf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, IWXXMConverterBase.F_SECURE_PROCESSING);
+        return dbf.newDocumentBuilder();
+    }
+}
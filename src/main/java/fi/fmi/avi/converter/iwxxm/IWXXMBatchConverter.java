@@ -0,0 +1,54 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import fi.fmi.avi.converter.AviMessageSpecificConverter;
+import fi.fmi.avi.converter.ConversionHints;
+import fi.fmi.avi.converter.ConversionResult;
+
+/**
+ * A message specific converter able to convert batches of messages.
+ *
+ * The messages of a batch share the DOM builders, XPath evaluators and transformers needed by the conversions, see
+ * {@link IWXXMBatchContext}, instead of creating them for each message. The messages may also be converted in parallel
+ * on a given executor, in which case each task of the batch converts a consecutive part of the messages with its own
+ * shared objects.
+ *
+ * @param <T>
+ *         the input type
+ * @param <S>
+ *         the output type
+ */
+public interface IWXXMBatchConverter<T, S> extends AviMessageSpecificConverter<T, S> {
+
+    /**
+     * Converts the given messages in the calling thread.
+     *
+     * @param inputs
+     *         the messages to convert
+     * @param hints
+     *         the conversion hints used for all the messages
+     *
+     * @return the conversion results in the order of the inputs
+     */
+    default List<ConversionResult<S>> convertBatch(final List<T> inputs, final ConversionHints hints) {
+        return convertBatch(inputs, hints, null);
+    }
+
+    /**
+     * Converts the given messages, in parallel if an executor is given.
+     *
+     * @param inputs
+     *         the messages to convert
+     * @param hints
+     *         the conversion hints used for all the messages
+     * @param executor
+     *         the executor to convert the messages on, or null to convert them in the calling thread
+     *
+     * @return the conversion results in the order of the inputs
+     */
+    default List<ConversionResult<S>> convertBatch(final List<T> inputs, final ConversionHints hints, final Executor executor) {
+        return IWXXMBatchContext.convertBatch(this, inputs, hints, executor);
+    }
+}
@@ -0,0 +1,303 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Streaming SAX filter implementing the IWXXM cleanup rules without XSLT.
+ *
+ * Produces the same result as the cleanup stylesheets (such as TAFCleanup.xsl and SIGMETCleanup.xsl):
+ * <ul>
+ *     <li>removes the configured elements if they have attribute xsi:nil="true",</li>
+ *     <li>removes the redundant xsi:type="iwxxm:MeteorologicalAerodromeForecastRecordPropertyType" attributes of om:result
+ *     elements,</li>
+ *     <li>adds a nil iwxxm:directionOfMotion as the first child of the configured evolving condition elements, if they have
+ *     an iwxxm:speedOfMotion child but no iwxxm:directionOfMotion child.</li>
+ * </ul>
+ *
+ * A filter instance is stateful and must only be used for one document at a time.
+ */
+public class IWXXMCleanupFilter extends XMLFilterImpl {
+    private static final String XSI_NS = XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI;
+    private static final String IWXXM_NS = IWXXMNamespaceContext.getURI("iwxxm");
+    private static final String OM_NS = IWXXMNamespaceContext.getURI("om");
+    private static final String REDUNDANT_RESULT_TYPE = "iwxxm:MeteorologicalAerodromeForecastRecordPropertyType";
+    private static final String MISSING_NIL_REASON = "http://codes.wmo.int/common/nil/missing";
+
+    /**
+     * The elements removed if nil by all the cleanup stylesheets.
+     */
+    public static final Set<QName> DEFAULT_NIL_ELEMENTS_TO_REMOVE = Collections.singleton(new QName(IWXXMNamespaceContext.getURI("gml"), "boundedBy"));
+
+    private final Set<QName> nilElementsToRemove;
+    private final Set<QName> evolvingConditionElements;
+
+    private int skipDepth = 0;
+    private int endPrefixMappingsToSkip = 0;
+    private final List<String[]> pendingPrefixMappings = new ArrayList<>();
+    private final Deque<Integer> prefixMappingCounts = new ArrayDeque<>();
+    private final Deque<String> xsiPrefixes = new ArrayDeque<>();
+    private EventBuffer buffer;
+
+    public IWXXMCleanupFilter() {
+        this(DEFAULT_NIL_ELEMENTS_TO_REMOVE, Collections.emptySet());
+    }
+
+    /**
+     * Creates a cleanup filter.
+     *
+     * @param nilElementsToRemove
+     *         the elements to remove if they have attribute xsi:nil="true"
+     * @param evolvingConditionElements
+     *         the elements to add the missing nil iwxxm:directionOfMotion to
+     */
+    public IWXXMCleanupFilter(final Collection<QName> nilElementsToRemove, final Collection<QName> evolvingConditionElements) {
+        this.nilElementsToRemove = new HashSet<>(nilElementsToRemove);
+        this.evolvingConditionElements = new HashSet<>(evolvingConditionElements);
+    }
+
+    public IWXXMCleanupFilter(final ContentHandler contentHandler, final Collection<QName> nilElementsToRemove,
+            final Collection<QName> evolvingConditionElements) {
+        this(nilElementsToRemove, evolvingConditionElements);
+        this.setContentHandler(contentHandler);
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        this.skipDepth = 0;
+        this.endPrefixMappingsToSkip = 0;
+        this.pendingPrefixMappings.clear();
+        this.prefixMappingCounts.clear();
+        this.xsiPrefixes.clear();
+        this.buffer = null;
+        super.startDocument();
+    }
+
+    @Override
+    public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+        //Delayed until we know if the element declaring the prefix is removed:
+        this.pendingPrefixMappings.add(new String[] { prefix, uri });
+    }
+
+    @Override
+    public void endPrefixMapping(final String prefix) throws SAXException {
+        if (this.endPrefixMappingsToSkip > 0) {
+            this.endPrefixMappingsToSkip--;
+            return;
+        }
+        if (prefix.equals(this.xsiPrefixes.peek())) {
+            this.xsiPrefixes.pop();
+        }
+        this.emit(h -> h.endPrefixMapping(prefix));
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes atts) throws SAXException {
+        final int mappingCount = this.pendingPrefixMappings.size();
+        this.prefixMappingCounts.push(mappingCount);
+        if (this.skipDepth > 0 || this.isRemovedNil(uri, localName, atts)) {
+            this.skipDepth++;
+            this.pendingPrefixMappings.clear();
+            return;
+        }
+        for (final String[] mapping : this.pendingPrefixMappings) {
+            if (XSI_NS.equals(mapping[1])) {
+                this.xsiPrefixes.push(mapping[0]);
+            }
+            this.emit(h -> h.startPrefixMapping(mapping[0], mapping[1]));
+        }
+        this.pendingPrefixMappings.clear();
+
+        final Attributes outputAtts = this.cleanAttributes(uri, localName, atts);
+        if (this.buffer != null) {
+            this.buffer.startElement(uri, localName, qName, outputAtts);
+        } else if (this.evolvingConditionElements.contains(new QName(uri, localName))) {
+            this.buffer = new EventBuffer(uri, localName, qName, new AttributesImpl(outputAtts));
+        } else {
+            super.startElement(uri, localName, qName, outputAtts);
+        }
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        final int mappingCount = this.prefixMappingCounts.pop();
+        if (this.skipDepth > 0) {
+            this.skipDepth--;
+            this.endPrefixMappingsToSkip = mappingCount;
+            return;
+        }
+        if (this.buffer != null) {
+            if (this.buffer.endElement(uri, localName, qName)) {
+                final EventBuffer completed = this.buffer;
+                this.buffer = null;
+                completed.replay();
+            }
+        } else {
+            super.endElement(uri, localName, qName);
+        }
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        if (this.skipDepth == 0) {
+            final char[] copy = this.buffer != null ? copyOf(ch, start, length) : ch;
+            final int copyStart = this.buffer != null ? 0 : start;
+            this.emit(h -> h.characters(copy, copyStart, length));
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+        if (this.skipDepth == 0) {
+            final char[] copy = this.buffer != null ? copyOf(ch, start, length) : ch;
+            final int copyStart = this.buffer != null ? 0 : start;
+            this.emit(h -> h.ignorableWhitespace(copy, copyStart, length));
+        }
+    }
+
+    @Override
+    public void processingInstruction(final String target, final String data) throws SAXException {
+        if (this.skipDepth == 0) {
+            this.emit(h -> h.processingInstruction(target, data));
+        }
+    }
+
+    private boolean isRemovedNil(final String uri, final String localName, final Attributes atts) {
+        return "true".equals(atts.getValue(XSI_NS, "nil")) && this.nilElementsToRemove.contains(new QName(uri, localName));
+    }
+
+    private Attributes cleanAttributes(final String uri, final String localName, final Attributes atts) {
+        if (OM_NS.equals(uri) && "result".equals(localName)) {
+            final int typeIndex = atts.getIndex(XSI_NS, "type");
+            if (typeIndex != -1 && REDUNDANT_RESULT_TYPE.equals(atts.getValue(typeIndex))) {
+                final AttributesImpl retval = new AttributesImpl(atts);
+                retval.removeAttribute(typeIndex);
+                return retval;
+            }
+        }
+        if (this.buffer != null) {
+            //Attributes objects may be re-used by the caller:
+            return new AttributesImpl(atts);
+        }
+        return atts;
+    }
+
+    private void emit(final SAXEvent event) throws SAXException {
+        if (this.buffer != null) {
+            this.buffer.add(event);
+        } else if (this.getContentHandler() != null) {
+            event.sendTo(this.getContentHandler());
+        }
+    }
+
+    private static char[] copyOf(final char[] ch, final int start, final int length) {
+        final char[] retval = new char[length];
+        System.arraycopy(ch, start, retval, 0, length);
+        return retval;
+    }
+
+    @FunctionalInterface
+    private interface SAXEvent {
+        void sendTo(ContentHandler handler) throws SAXException;
+    }
+
+    /*
+     * Buffers the content of an evolving condition element to find out
+     * if the missing directionOfMotion needs to be inserted as its first child.
+     */
+    private class EventBuffer {
+        private final String uri;
+        private final String localName;
+        private final String qName;
+        private final Attributes atts;
+        private final List<SAXEvent> events = new ArrayList<>();
+        private int depth = 0;
+        private boolean hasDirectionOfMotion = false;
+        private boolean hasSpeedOfMotion = false;
+
+        EventBuffer(final String uri, final String localName, final String qName, final Attributes atts) {
+            this.uri = uri;
+            this.localName = localName;
+            this.qName = qName;
+            this.atts = atts;
+        }
+
+        void add(final SAXEvent event) {
+            this.events.add(event);
+        }
+
+        void startElement(final String childUri, final String childLocalName, final String childQName, final Attributes childAtts) {
+            if (this.depth == 0 && IWXXM_NS.equals(childUri)) {
+                if ("directionOfMotion".equals(childLocalName)) {
+                    this.hasDirectionOfMotion = true;
+                } else if ("speedOfMotion".equals(childLocalName)) {
+                    this.hasSpeedOfMotion = true;
+                }
+            }
+            this.depth++;
+            this.events.add(h -> h.startElement(childUri, childLocalName, childQName, childAtts));
+        }
+
+        /*
+         * Returns true if this ends the buffered element.
+         */
+        boolean endElement(final String childUri, final String childLocalName, final String childQName) {
+            if (this.depth == 0) {
+                return true;
+            }
+            this.depth--;
+            this.events.add(h -> h.endElement(childUri, childLocalName, childQName));
+            return false;
+        }
+
+        void replay() throws SAXException {
+            final ContentHandler handler = IWXXMCleanupFilter.this.getContentHandler();
+            if (handler == null) {
+                return;
+            }
+            handler.startElement(this.uri, this.localName, this.qName, this.atts);
+            if (this.hasSpeedOfMotion && !this.hasDirectionOfMotion) {
+                this.insertMissingDirectionOfMotion(handler);
+            }
+            for (final SAXEvent event : this.events) {
+                event.sendTo(handler);
+            }
+            handler.endElement(this.uri, this.localName, this.qName);
+        }
+
+        private void insertMissingDirectionOfMotion(final ContentHandler handler) throws SAXException {
+            final String iwxxmPrefix = this.qName.indexOf(':') != -1 ? this.qName.substring(0, this.qName.indexOf(':')) : "";
+            final String directionQName = iwxxmPrefix.isEmpty() ? "directionOfMotion" : iwxxmPrefix + ":directionOfMotion";
+            String xsiPrefix = IWXXMCleanupFilter.this.xsiPrefixes.peek();
+            final boolean declareXsi = xsiPrefix == null;
+            if (declareXsi) {
+                xsiPrefix = "xsi";
+                handler.startPrefixMapping(xsiPrefix, XSI_NS);
+            }
+            final AttributesImpl directionAtts = new AttributesImpl();
+            directionAtts.addAttribute("", "uom", "uom", "CDATA", "deg");
+            directionAtts.addAttribute(XSI_NS, "nil", xsiPrefix + ":nil", "CDATA", "true");
+            directionAtts.addAttribute("", "nilReason", "nilReason", "CDATA", MISSING_NIL_REASON);
+            handler.startElement(IWXXM_NS, "directionOfMotion", directionQName, directionAtts);
+            handler.endElement(IWXXM_NS, "directionOfMotion", directionQName);
+            if (declareXsi) {
+                handler.endPrefixMapping(xsiPrefix);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import fi.fmi.avi.converter.ConversionHints;
+
+/**
+ * IWXXM specific conversion hints.
+ *
+ * The keys and values defined here are used in the same way as the generic ones in
+ * {@link ConversionHints}, they are only relevant for the IWXXM converters.
+ */
+public final class IWXXMConversionHints {
+
+    /**
+     * Controls how the XML Schema validation is done when serializing messages to IWXXM DOM or String.
+     * By default the JAXB content tree is marshalled only once, and validated while rendering.
+     */
+    public static final ConversionHints.Key KEY_SERIALIZATION_VALIDATION;
+
+    /**
+     * Validate the document while marshalling it into the output (default).
+     */
+    public static final Object VALUE_SERIALIZATION_VALIDATION_SINGLE_PASS = "SINGLE_PASS";
+
+    /**
+     * Validate the document with a separate marshalling pass before rendering it.
+     */
+    public static final Object VALUE_SERIALIZATION_VALIDATION_SEPARATE_PASS = "SEPARATE_PASS";
+
+    /**
+     * Controls how the generated IWXXM documents are cleaned up after marshalling.
+     * By default the built-in streaming cleanup filter {@link IWXXMCleanupFilter} is used.
+     */
+    public static final ConversionHints.Key KEY_CLEANUP;
+
+    /**
+     * Clean up using the built-in streaming filter (default).
+     */
+    public static final Object VALUE_CLEANUP_NATIVE = "NATIVE";
+
+    /**
+     * Clean up using the serializer's cleanup XSLT stylesheet.
+     */
+    public static final Object VALUE_CLEANUP_XSLT = "XSLT";
+
+    /**
+     * Controls how the IWXXM Schematron rules are evaluated when parsing messages.
+     * By default the official Schematron XSLT is run and the failed assertions are read from its SVRL report.
+     */
+    public static final ConversionHints.Key KEY_SCHEMATRON_ENGINE;
+
+    /**
+     * Evaluate the rules by running the Schematron XSLT (default).
+     */
+    public static final Object VALUE_SCHEMATRON_ENGINE_XSLT = "XSLT";
+
+    /**
+     * Evaluate the rules extracted from the Schematron XSLT directly as XPath expressions, see {@link SchematronRuleEngine}.
+     * Falls back to the XSLT if the rules cannot be extracted.
+     */
+    public static final Object VALUE_SCHEMATRON_ENGINE_NATIVE = "NATIVE";
+
+    /**
+     * Controls which IWXXM Schematron rules are evaluated when parsing messages.
+     * By default only the rules relevant for the message type given by the root element of the document are evaluated.
+     */
+    public static final ConversionHints.Key KEY_SCHEMATRON_RULES;
+
+    /**
+     * Evaluate only the rules relevant for the message type of the document (default).
+     */
+    public static final Object VALUE_SCHEMATRON_RULES_BY_MESSAGE_TYPE = "BY_MESSAGE_TYPE";
+
+    /**
+     * Evaluate all the rules for each document.
+     */
+    public static final Object VALUE_SCHEMATRON_RULES_ALL = "ALL";
+
+    /**
+     * Controls how thoroughly the IWXXM documents are validated when parsing and serializing messages.
+     * Lower levels can be used for saving CPU when the documents are known to be valid, for example when
+     * re-parsing documents just serialized by these converters. If not given, the message parsers validate
+     * against the XML Schema and the Schematron rules, the serializers against the XML Schema, and
+     * the generic bulletin parsers do not validate.
+     */
+    public static final ConversionHints.Key KEY_VALIDATION_LEVEL;
+
+    /**
+     * No validation.
+     */
+    public static final Object VALUE_VALIDATION_LEVEL_NONE = "NONE";
+
+    /**
+     * Validate against the XML Schema only.
+     */
+    public static final Object VALUE_VALIDATION_LEVEL_SCHEMA = "SCHEMA";
+
+    /**
+     * Validate against the XML Schema and the IWXXM Schematron rules. The serializers validate the rendered
+     * documents against the Schematron rules.
+     */
+    public static final Object VALUE_VALIDATION_LEVEL_SCHEMA_AND_SCHEMATRON = "SCHEMA_AND_SCHEMATRON";
+
+    /**
+     * As {@link #VALUE_VALIDATION_LEVEL_SCHEMA_AND_SCHEMATRON}, but always evaluating all the Schematron rules
+     * regardless of {@link #KEY_SCHEMATRON_RULES}.
+     */
+    public static final Object VALUE_VALIDATION_LEVEL_FULL = "FULL";
+
+    static {
+        KEY_SERIALIZATION_VALIDATION = new IWXXMKey(1001, "Serialization validation", VALUE_SERIALIZATION_VALIDATION_SINGLE_PASS,
+                VALUE_SERIALIZATION_VALIDATION_SEPARATE_PASS);
+        KEY_CLEANUP = new IWXXMKey(1002, "Cleanup", VALUE_CLEANUP_NATIVE, VALUE_CLEANUP_XSLT);
+        KEY_SCHEMATRON_ENGINE = new IWXXMKey(1003, "Schematron engine", VALUE_SCHEMATRON_ENGINE_XSLT, VALUE_SCHEMATRON_ENGINE_NATIVE);
+        KEY_SCHEMATRON_RULES = new IWXXMKey(1004, "Schematron rules", VALUE_SCHEMATRON_RULES_BY_MESSAGE_TYPE, VALUE_SCHEMATRON_RULES_ALL);
+        KEY_VALIDATION_LEVEL = new IWXXMKey(1005, "Validation level", VALUE_VALIDATION_LEVEL_NONE, VALUE_VALIDATION_LEVEL_SCHEMA,
+                VALUE_VALIDATION_LEVEL_SCHEMA_AND_SCHEMATRON, VALUE_VALIDATION_LEVEL_FULL);
+    }
+
+    private IWXXMConversionHints() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns the hint value for the given key, or the default value if the hint is not set.
+     *
+     * @param hints
+     *         the hints, may be null
+     * @param key
+     *         the hint key
+     * @param defaultValue
+     *         the value to return if the hint is not given
+     *
+     * @return the effective hint value
+     */
+    public static Object getOrDefault(final ConversionHints hints, final ConversionHints.Key key, final Object defaultValue) {
+        if (hints != null && hints.containsKey(key)) {
+            final Object value = hints.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return defaultValue;
+    }
+
+    private static class IWXXMKey extends ConversionHints.Key {
+        private final String name;
+        private final Set<Object> allowedValues;
+
+        IWXXMKey(final int privateKey, final String name, final Object... allowedValues) {
+            super(privateKey);
+            this.name = name;
+            this.allowedValues = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(allowedValues)));
+        }
+
+        @Override
+        public boolean isCompatibleValue(final Object value) {
+            return this.allowedValues.isEmpty() || this.allowedValues.contains(value);
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+}
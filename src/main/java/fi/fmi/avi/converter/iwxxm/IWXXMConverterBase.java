@@ -1,27 +1,38 @@
 package fi.fmi.avi.converter.iwxxm;
 
 import java.io.ByteArrayInputStream;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
-import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.ValidationEventHandler;
+import javax.xml.bind.annotation.XmlElementDecl;
+import javax.xml.bind.annotation.XmlType;
+import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Source;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.SchemaFactory;
 
 import net.opengis.gml32.AbstractTimeObjectType;
 import net.opengis.gml32.TimeInstantPropertyType;
@@ -31,21 +42,24 @@ import net.opengis.gml32.TimePeriodType;
 import net.opengis.gml32.TimePositionType;
 import net.opengis.om20.TimeObjectPropertyType;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
 import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
 import fi.fmi.avi.converter.ConversionException;
 import fi.fmi.avi.converter.ConversionHints;
 import fi.fmi.avi.model.PartialOrCompleteTimeInstant;
 import fi.fmi.avi.model.PartialOrCompleteTimePeriod;
-import icao.iwxxm21.ReportType;
-import wmo.collect2014.MeteorologicalBulletinType;
 
 /**
  * Helpers for creating and handling JAXB generated content classes.
  */
 public abstract class IWXXMConverterBase {
+    private static final Logger LOG = LoggerFactory.getLogger(IWXXMConverterBase.class);
+
     /*
       XMLConstants.FEATURE_SECURE_PROCESSING flag value "true" forces the XML schema
       loader to check the allowed protocols using the system property "javax.xml.accessExternalSchema".
@@ -72,9 +86,50 @@ public abstract class IWXXMConverterBase {
             F_SECURE_PROCESSING = false;
         }
     }
-    private static JAXBContext jaxbCtx = null;
-    private static final Map<String, Object> CLASS_TO_OBJECT_FACTORY = new HashMap<>();
-    private static final Map<String, Object> OBJECT_FACTORY_MAP = new HashMap<>();
+    private static volatile JAXBContext jaxbCtx = null;
+    private static final ConcurrentMap<String, String> PROPERTY_GETTER_NAMES = new ConcurrentHashMap<>();
+    private static final ClassValue<Optional<String>> TYPE_GETTER_NAMES = new ClassValue<Optional<String>>() {
+        @Override
+        protected Optional<String> computeValue(final Class<?> type) {
+            if (type.getSimpleName().endsWith("Type")) {
+                return Optional.of("get" + type.getSimpleName().substring(0, type.getSimpleName().length() - 4));
+            }
+            return Optional.empty();
+        }
+    };
+    /*
+     * The xsi:schemaLocation written into the serialized IWXXM documents.
+     */
+    private static final String RENDERING_SCHEMA_LOCATION = "http://icao.int/iwxxm/2.1 http://schemas.wmo.int/iwxxm/2.1.1/iwxxm.xsd "
+            + "http://def.wmo.int/metce/2013 http://schemas.wmo.int/metce/1.2/metce.xsd http://def.wmo.int/collect/2014 "
+            + "http://schemas.wmo.int/collect/1.2/collect.xsd http://www.opengis.net/samplingSpatial/2.0 "
+            + "http://schemas.opengis.net/samplingSpatial/2.0/spatialSamplingFeature.xsd";
+
+    /*
+       Performance optimization: the Marshallers and Unmarshallers are pooled pre-configured per schema set
+       and validation mode. Binders are not pooled: a Binder keeps the associations between the DOM nodes and the
+       JAXB objects of every document it has unmarshalled, and has no way of clearing them. A new Binder is cheap to
+       create from the shared JAXBContext, so they are created per document instead.
+    */
+    private static final Map<IWXXMSchemaRegistry.SchemaSet, JAXBObjectPool<Marshaller>> VALIDATING_MARSHALLERS = new EnumMap<>(
+            IWXXMSchemaRegistry.SchemaSet.class);
+    private static final Map<IWXXMSchemaRegistry.SchemaSet, JAXBObjectPool<Marshaller>> VALIDATING_RENDERING_MARSHALLERS = new EnumMap<>(
+            IWXXMSchemaRegistry.SchemaSet.class);
+    private static final JAXBObjectPool<Marshaller> RENDERING_MARSHALLERS = new JAXBObjectPool<>("Marshaller[rendering]",
+            () -> createRenderingMarshaller(null));
+    private static final Map<IWXXMSchemaRegistry.SchemaSet, JAXBObjectPool<Unmarshaller>> VALIDATING_UNMARSHALLERS = new EnumMap<>(
+            IWXXMSchemaRegistry.SchemaSet.class);
+    private static final JAXBObjectPool<Unmarshaller> UNMARSHALLERS = new JAXBObjectPool<>("Unmarshaller", () -> getJAXBContext().createUnmarshaller());
+    static {
+        for (final IWXXMSchemaRegistry.SchemaSet schemaSet : IWXXMSchemaRegistry.SchemaSet.values()) {
+            VALIDATING_MARSHALLERS.put(schemaSet, new JAXBObjectPool<>("Marshaller[validation, " + schemaSet + "]",
+                    () -> createValidatingMarshaller(schemaSet)));
+            VALIDATING_RENDERING_MARSHALLERS.put(schemaSet, new JAXBObjectPool<>("Marshaller[rendering, validation, " + schemaSet + "]",
+                    () -> createRenderingMarshaller(schemaSet)));
+            VALIDATING_UNMARSHALLERS.put(schemaSet, new JAXBObjectPool<>("Unmarshaller[validation, " + schemaSet + "]",
+                    () -> createValidatingUnmarshaller(schemaSet)));
+        }
+    }
 
     /**
      * Singleton for accessing the shared JAXBContext for IWXXM JAXB handling.
@@ -82,55 +137,38 @@ public abstract class IWXXMConverterBase {
      * NOTE: this can take several seconds when done for the first time after JVM start,
      * needs to scan all the jars in classpath.
      *
+     * The context is created using double-checked locking: once created, the calls
+     * only read a volatile field and never block.
+     *
      * @return the context
      * @throws JAXBException if the context cannot be created
      */
-    public static synchronized JAXBContext getJAXBContext() throws JAXBException {
-        if (jaxbCtx == null) {
-            jaxbCtx = JAXBContext.newInstance("icao.iwxxm21:aero.aixm511:net.opengis.gml32:org.iso19139.ogc2007.gmd:org.iso19139.ogc2007.gco:org"
-                    + ".iso19139.ogc2007.gss:org.iso19139.ogc2007.gts:org.iso19139.ogc2007.gsr:net.opengis.om20:net.opengis.sampling:net.opengis.sampling"
-                    + ".spatial:wmo.metce2013:wmo.opm2013:wmo.collect2014:org.w3c.xlink11");
+    public static JAXBContext getJAXBContext() throws JAXBException {
+        JAXBContext retval = jaxbCtx;
+        if (retval == null) {
+            synchronized (IWXXMConverterBase.class) {
+                retval = jaxbCtx;
+                if (retval == null) {
+                    retval = JAXBContext.newInstance("icao.iwxxm21:aero.aixm511:net.opengis.gml32:org.iso19139.ogc2007.gmd:org.iso19139.ogc2007.gco:org"
+                            + ".iso19139.ogc2007.gss:org.iso19139.ogc2007.gts:org.iso19139.ogc2007.gsr:net.opengis.om20:net.opengis.sampling:net.opengis"
+                            + ".sampling.spatial:wmo.metce2013:wmo.opm2013:wmo.collect2014:org.w3c.xlink11");
+                    jaxbCtx = retval;
+                }
+            }
         }
-        return jaxbCtx;
+        return retval;
     }
 
     public static <T> T create(final Class<T> clz) throws IllegalArgumentException {
         return create(clz, null);
     }
 
-    @SuppressWarnings("unchecked")
     public static <T> T create(final Class<T> clz, final Consumer<T> consumer) throws IllegalArgumentException {
-        Object result = null;
-        final Object objectFactory = getObjectFactory(clz);
-        if (objectFactory != null) {
-            String methodName = null;
-            if (clz.getEnclosingClass() != null) {
-                Class<?> encClass = clz.getEnclosingClass();
-                final StringBuilder sb = new StringBuilder("create").append(encClass.getSimpleName().substring(0, 1).toUpperCase())
-                        .append(encClass.getSimpleName().substring(1));
-                while (encClass.getEnclosingClass() != null) {
-                    sb.append(clz.getSimpleName());
-                    encClass = encClass.getEnclosingClass();
-                }
-                methodName = sb.append(clz.getSimpleName()).toString();
-            } else {
-                methodName = new StringBuilder("create").append(clz.getSimpleName().substring(0, 1).toUpperCase())
-                        .append(clz.getSimpleName().substring(1))
-                        .toString();
-            }
-            try {
-                final Method toCall = objectFactory.getClass().getMethod(methodName);
-                result = toCall.invoke(objectFactory);
-            } catch (ClassCastException | NoSuchMethodException | IllegalAccessException | IllegalAccessError | InvocationTargetException | IllegalArgumentException e) {
-                throw new IllegalArgumentException("Unable to create JAXB element object for type " + clz, e);
-            }
-            if (consumer != null) {
-                consumer.accept((T) result);
-            }
-        } else {
-            throw new IllegalArgumentException("Unable to find ObjectFactory for JAXB element type " + clz);
+        final T result = JAXBObjectCreator.of(clz).create();
+        if (consumer != null) {
+            consumer.accept(result);
         }
-        return (T) result;
+        return result;
     }
 
     public static <T> JAXBElement<T> createAndWrap(final Class<T> clz) {
@@ -146,107 +184,185 @@ public abstract class IWXXMConverterBase {
         return wrap(element, clz, null);
     }
 
-    @SuppressWarnings("unchecked")
     public static <T> JAXBElement<T> wrap(final T element, final Class<T> clz, final Consumer<T> consumer) {
-        Object result = null;
-        final Object objectFactory = getObjectFactory(clz);
-        if (objectFactory != null) {
-            final String methodName = new StringBuilder("create").append(clz.getSimpleName().substring(0, 1).toUpperCase())
-                    .append(clz.getSimpleName().substring(1, clz.getSimpleName().lastIndexOf("Type")))
-                    .toString();
-            try {
-                final Method toCall = objectFactory.getClass().getMethod(methodName, clz);
-                result = toCall.invoke(objectFactory, element);
-            } catch (ClassCastException | NoSuchMethodException | IllegalAccessException | IllegalAccessError | InvocationTargetException | IllegalArgumentException e) {
-                throw new IllegalArgumentException("Unable to create JAXBElement wrapper", e);
-            }
-        } else {
-            throw new IllegalArgumentException("Unable to find ObjectFactory for JAXB element type " + clz);
-        }
+        final JAXBElement<T> result = JAXBObjectCreator.of(clz).wrap(element);
         if (consumer != null) {
             consumer.accept(element);
         }
-        return (JAXBElement<T>) result;
+        return result;
     }
-    @SuppressWarnings("unchecked")
+
+    /**
+     * Returns the pool of validating Marshallers for the given schema set. The pooled Marshallers are
+     * configured with the shared pre-compiled {@link javax.xml.validation.Schema}, the schema location and the
+     * IWXXM namespace prefix mapping. The borrower is responsible for setting and resetting the event handler.
+     *
+     * @param schemaSet
+     *         the schema set to validate against
+     *
+     * @return the marshaller pool
+     */
+    public static JAXBObjectPool<Marshaller> getValidatingMarshallerPool(final IWXXMSchemaRegistry.SchemaSet schemaSet) {
+        return VALIDATING_MARSHALLERS.get(schemaSet);
+    }
+
+    /**
+     * Returns the pool of Marshallers for rendering the serialized IWXXM documents. The pooled Marshallers are
+     * configured with the UTF-8 encoding, the schema location of the output documents and the IWXXM namespace prefix mapping.
+     * If a schema set is given, they are also configured with the shared pre-compiled {@link javax.xml.validation.Schema} for
+     * validating the content while rendering it. The borrower is responsible for setting and resetting the event handler.
+     *
+     * @param validationSchemaSet
+     *         the schema set to validate against, or null for no validation
+     *
+     * @return the marshaller pool
+     */
+    public static JAXBObjectPool<Marshaller> getRenderingMarshallerPool(final IWXXMSchemaRegistry.SchemaSet validationSchemaSet) {
+        if (validationSchemaSet == null) {
+            return RENDERING_MARSHALLERS;
+        }
+        return VALIDATING_RENDERING_MARSHALLERS.get(validationSchemaSet);
+    }
+
+    /**
+     * Returns the pool of validating Unmarshallers for the given schema set. The pooled Unmarshallers are
+     * configured with the shared pre-compiled {@link javax.xml.validation.Schema}. The borrower is responsible
+     * for setting and resetting the event handler and the listener.
+     *
+     * @param schemaSet
+     *         the schema set to validate against
+     *
+     * @return the unmarshaller pool
+     */
+    public static JAXBObjectPool<Unmarshaller> getValidatingUnmarshallerPool(final IWXXMSchemaRegistry.SchemaSet schemaSet) {
+        return VALIDATING_UNMARSHALLERS.get(schemaSet);
+    }
+
+    /**
+     * Returns the pool of Unmarshallers validating against the given schema set, or the pool of non-validating Unmarshallers
+     * if no schema set is given. The borrower is responsible for setting and resetting the event handler and the listener.
+     *
+     * @param validationSchemaSet
+     *         the schema set to validate against, or null for no validation
+     *
+     * @return the unmarshaller pool
+     */
+    public static JAXBObjectPool<Unmarshaller> getUnmarshallerPool(final IWXXMSchemaRegistry.SchemaSet validationSchemaSet) {
+        if (validationSchemaSet == null) {
+            return UNMARSHALLERS;
+        }
+        return VALIDATING_UNMARSHALLERS.get(validationSchemaSet);
+    }
+
+    /**
+     * Returns the effective validation level, see {@link IWXXMConversionHints#KEY_VALIDATION_LEVEL}.
+     *
+     * @param hints
+     *         the conversion hints
+     * @param defaultLevel
+     *         the level of the converter if not given in the hints
+     *
+     * @return the validation level
+     */
+    protected static Object getValidationLevel(final ConversionHints hints, final Object defaultLevel) {
+        return IWXXMConversionHints.getOrDefault(hints, IWXXMConversionHints.KEY_VALIDATION_LEVEL, defaultLevel);
+    }
+
+    /**
+     * @param validationLevel
+     *         the validation level
+     *
+     * @return true if the given level includes the XML Schema validation
+     */
+    protected static boolean includesSchemaValidation(final Object validationLevel) {
+        return !IWXXMConversionHints.VALUE_VALIDATION_LEVEL_NONE.equals(validationLevel);
+    }
+
+    /**
+     * @param validationLevel
+     *         the validation level
+     *
+     * @return true if the given level includes the Schematron validation
+     */
+    protected static boolean includesSchematronValidation(final Object validationLevel) {
+        return IWXXMConversionHints.VALUE_VALIDATION_LEVEL_SCHEMA_AND_SCHEMATRON.equals(validationLevel) || IWXXMConversionHints.VALUE_VALIDATION_LEVEL_FULL
+                .equals(validationLevel);
+    }
+
+    /**
+     * Returns all the shared pools of JAXB Marshallers and Unmarshallers, for monitoring the pool metrics.
+     *
+     * @return the pools
+     */
+    public static List<JAXBObjectPool<?>> getJAXBObjectPools() {
+        final List<JAXBObjectPool<?>> retval = new ArrayList<>();
+        retval.addAll(VALIDATING_MARSHALLERS.values());
+        retval.add(RENDERING_MARSHALLERS);
+        retval.addAll(VALIDATING_RENDERING_MARSHALLERS.values());
+        retval.add(UNMARSHALLERS);
+        retval.addAll(VALIDATING_UNMARSHALLERS.values());
+        return Collections.unmodifiableList(retval);
+    }
+
     protected static <S> void validateDocument(final S input, final Class<S> clz, final ConversionHints hints, final ValidationEventHandler eventHandler) {
+        if (!includesSchemaValidation(getValidationLevel(hints, IWXXMConversionHints.VALUE_VALIDATION_LEVEL_SCHEMA))) {
+            return;
+        }
         try {
-            //XML Schema validation:
-            final SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            final IWXXMSchemaResourceResolver resolver = IWXXMSchemaResourceResolver.getInstance();
-            schemaFactory.setResourceResolver(resolver);
-            schemaFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, F_SECURE_PROCESSING);
-            final Source[] schemaSources;
-            final String schemaLocation;
-            if (MeteorologicalBulletinType.class.isAssignableFrom(clz)) {
-                schemaSources = new Source[2];
-                schemaSources[0] = new StreamSource(ReportType.class.getResource("/int/wmo/collect/1.2/collect.xsd").toExternalForm());
-                schemaSources[1] = new StreamSource(ReportType.class.getResource("/int/icao/iwxxm/2.1.1/iwxxm.xsd").toExternalForm());
-                schemaLocation = "http://icao.int/iwxxm/2.1 https://schemas.wmo.int/iwxxm/2.1.1/iwxxm.xsd "
-                        + "http://def.wmo.int/metce/2013 http://schemas.wmo.int/metce/1.2/metce.xsd "
-                        + "http://def.wmo.int/collect/2014 http://schemas.wmo.int/collect/1.2/collect.xsd "
-                        + "http://www.opengis.net/samplingSpatial/2.0 http://schemas.opengis.net/samplingSpatial/2.0/spatialSamplingFeature.xsd";
-            } else {
-                schemaSources = new Source[1];
-                schemaSources[0] = new StreamSource(ReportType.class.getResource("/int/icao/iwxxm/2.1.1/iwxxm.xsd").toExternalForm());
-                schemaLocation = "http://icao.int/iwxxm/2.1 https://schemas.wmo.int/iwxxm/2.1.1/iwxxm.xsd "
-                        + "http://def.wmo.int/metce/2013 http://schemas.wmo.int/metce/1.2/metce.xsd "
-                        + "http://www.opengis.net/samplingSpatial/2.0 http://schemas.opengis.net/samplingSpatial/2.0/spatialSamplingFeature.xsd";
+            //XML Schema validation using a pooled pre-configured Marshaller:
+            final JAXBObjectPool<Marshaller> pool = getValidatingMarshallerPool(IWXXMSchemaRegistry.SchemaSet.forMessageClass(clz));
+            final Marshaller marshaller = pool.borrow();
+            try {
+                marshaller.setEventHandler(eventHandler);
+                //Marshall to run the validation:
+                marshaller.marshal(wrap(input, clz), new DefaultHandler());
+            } finally {
+                marshaller.setEventHandler(null);
+                pool.release(marshaller);
             }
-            final Marshaller marshaller = getJAXBContext().createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
-            marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, schemaLocation);
-            marshaller.setProperty("com.sun.xml.bind.namespacePrefixMapper", new IWXXMNamespaceContext());
-
-            marshaller.setSchema(schemaFactory.newSchema(schemaSources));
-            marshaller.setEventHandler(eventHandler);
-            //Marshall to run the validation:
-            marshaller.marshal(wrap(input, clz), new DefaultHandler());
         } catch (final Exception e) {
             throw new RuntimeException("Error in validating document", e);
         }
     }
 
-    private static Object getObjectFactory(final Class<?> clz) {
-        Object objectFactory = null;
+    private static Marshaller createValidatingMarshaller(final IWXXMSchemaRegistry.SchemaSet schemaSet) throws JAXBException {
+        final Marshaller marshaller = getJAXBContext().createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+        marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, schemaSet.getSchemaLocation());
+        marshaller.setProperty("com.sun.xml.bind.namespacePrefixMapper", new IWXXMNamespaceContext());
         try {
-            synchronized (OBJECT_FACTORY_MAP) {
-
-                objectFactory = CLASS_TO_OBJECT_FACTORY.get(clz.getCanonicalName());
-                if (objectFactory == null) {
-                    String objectFactoryPath = clz.getPackage().getName();
-                    String objectFactoryName = null;
-                    Class<?> ofClass = null;
-                    while (objectFactory == null && objectFactoryPath != null) {
-                        objectFactoryName = objectFactoryPath + ".ObjectFactory";
-                        objectFactory = OBJECT_FACTORY_MAP.get(objectFactoryName);
-                        if (objectFactory == null) {
-                            try {
-                                ofClass = IWXXMConverterBase.class.getClassLoader().loadClass(objectFactoryName);
-                                break;
-                            } catch (final ClassNotFoundException cnfe) {
-                                final int nextDot = objectFactoryPath.lastIndexOf('.');
-                                if (nextDot == -1) {
-                                    objectFactoryPath = null;
-                                } else {
-                                    objectFactoryPath = objectFactoryPath.substring(0, nextDot);
-                                }
-                            }
-                        }
-                    }
-                    if (ofClass != null) {
-                        final Constructor<?> c = ofClass.getConstructor();
-                        objectFactory = c.newInstance();
-                        OBJECT_FACTORY_MAP.put(objectFactoryName, objectFactory);
-                    }
-                    CLASS_TO_OBJECT_FACTORY.put(clz.getCanonicalName(), objectFactory);
-                }
+            marshaller.setSchema(IWXXMSchemaRegistry.getSchema(schemaSet));
+        } catch (final SAXException e) {
+            throw new JAXBException("Unable to compile the XML Schema for " + schemaSet, e);
+        }
+        return marshaller;
+    }
+
+    private static Marshaller createRenderingMarshaller(final IWXXMSchemaRegistry.SchemaSet validationSchemaSet) throws JAXBException {
+        final Marshaller marshaller = getJAXBContext().createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+        marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, RENDERING_SCHEMA_LOCATION);
+        marshaller.setProperty("com.sun.xml.bind.namespacePrefixMapper", new IWXXMNamespaceContext());
+        if (validationSchemaSet != null) {
+            try {
+                marshaller.setSchema(IWXXMSchemaRegistry.getSchema(validationSchemaSet));
+            } catch (final SAXException e) {
+                throw new JAXBException("Unable to compile the XML Schema for " + validationSchemaSet, e);
             }
-            return objectFactory;
-        } catch (ClassCastException | NoSuchMethodException | IllegalAccessException | IllegalAccessError | InstantiationException | InvocationTargetException e) {
-            throw new IllegalArgumentException("Unable to get ObjectFactory for " + clz.getCanonicalName(), e);
         }
+        return marshaller;
     }
+
+    private static Unmarshaller createValidatingUnmarshaller(final IWXXMSchemaRegistry.SchemaSet schemaSet) throws JAXBException {
+        final Unmarshaller unmarshaller = getJAXBContext().createUnmarshaller();
+        try {
+            unmarshaller.setSchema(IWXXMSchemaRegistry.getSchema(schemaSet));
+        } catch (final SAXException e) {
+            throw new JAXBException("Unable to compile the XML Schema for " + schemaSet, e);
+        }
+        return unmarshaller;
+    }
+
     public static <T> Optional<T> resolveProperty(final Object prop, final Class<T> clz, final ReferredObjectRetrievalContext refCtx) {
         return resolveProperty(prop, null, clz, refCtx);
     }
@@ -256,38 +372,34 @@ public abstract class IWXXMConverterBase {
         if (prop == null) {
             return Optional.empty();
         }
+        final Class<?> propClass = prop.getClass();
         try {
             //First try resolving the href reference (if it exists):
-            try {
-                final Method getHref = prop.getClass().getMethod("getHref", (Class<?>[]) null);
-                if (String.class.isAssignableFrom(getHref.getReturnType())) {
-                    String id = (String) getHref.invoke(prop, (Object[]) null);
-                    if (id != null) {
-                        if (id.startsWith("#")) {
-                            id = id.substring(1);
-                        }
-                        return refCtx.getReferredObject(id, clz);
+            final PropertyGetter getHref = PropertyGetter.find(propClass, "getHref");
+            if (getHref != null && String.class.isAssignableFrom(getHref.returnType)) {
+                String id = (String) getHref.get(prop);
+                if (id != null) {
+                    if (id.startsWith("#")) {
+                        id = id.substring(1);
                     }
+                    return refCtx.getReferredObject(id, clz);
                 }
-            } catch (final NoSuchMethodException nsme) {
-                //NOOP
             }
 
             //Then try to return embedded property value:
             String getterCandidate = null;
             if (propertyName != null) {
-                getterCandidate = "get" + StringUtils.capitalize(propertyName);
-            } else if (clz.getSimpleName().endsWith("Type")) {
-                getterCandidate = "get" + clz.getSimpleName().substring(0, clz.getSimpleName().length() - 4);
+                getterCandidate = PROPERTY_GETTER_NAMES.computeIfAbsent(propertyName, name -> "get" + StringUtils.capitalize(name));
+            } else {
+                getterCandidate = TYPE_GETTER_NAMES.get(clz).orElse(null);
             }
             if (getterCandidate != null) {
-                Method getObject;
-                try {
-                    getObject = prop.getClass().getMethod(getterCandidate, (Class<?>[]) null);
-                    if (clz.isAssignableFrom(getObject.getReturnType())) {
-                        return (Optional<T>) Optional.ofNullable(getObject.invoke(prop, (Object[]) null));
-                    } else if (JAXBElement.class.isAssignableFrom(getObject.getReturnType())) {
-                        final JAXBElement<?> wrapped = (JAXBElement<?>) getObject.invoke(prop, (Object[]) null);
+                final PropertyGetter getObject = PropertyGetter.find(propClass, getterCandidate);
+                if (getObject != null) {
+                    if (clz.isAssignableFrom(getObject.returnType)) {
+                        return (Optional<T>) Optional.ofNullable(getObject.get(prop));
+                    } else if (JAXBElement.class.isAssignableFrom(getObject.returnType)) {
+                        final JAXBElement<?> wrapped = (JAXBElement<?>) getObject.get(prop);
                         if (wrapped != null) {
                             final Object value = wrapped.getValue();
                             if (value != null) {
@@ -297,20 +409,19 @@ public abstract class IWXXMConverterBase {
                             }
                         }
                     }
-                } catch (final NoSuchMethodException nsme) {
-                    try {
-                        getObject = prop.getClass().getMethod("getAny", (Class<?>[]) null);
-                        final Object wrapper = getObject.invoke(prop, (Object[]) null);
+                } else {
+                    final PropertyGetter getAny = PropertyGetter.find(propClass, "getAny");
+                    if (getAny != null) {
+                        final Object wrapper = getAny.get(prop);
                         if (wrapper != null && JAXBElement.class.isAssignableFrom(wrapper.getClass())) {
                             final Object value = ((JAXBElement) wrapper).getValue();
                             return (Optional<T>) Optional.of(value);
                         }
-                    } catch (final NoSuchMethodException nsme2) {
-                        //NOOP
                     }
                 }
             }
-        } catch (final IllegalAccessException | InvocationTargetException e) {
+        } catch (final GetterFailedException e) {
+            //A failing getter is treated as an absent property:
             return Optional.empty();
         }
         return Optional.empty();
@@ -422,11 +533,8 @@ public abstract class IWXXMConverterBase {
 
     protected static Document parseStringToDOM(final String input) throws ConversionException {
         Document retval = null;
-        final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        dbf.setNamespaceAware(true);
         try {
-            dbf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, F_SECURE_PROCESSING);
-            final DocumentBuilder db = dbf.newDocumentBuilder();
+            final DocumentBuilder db = IWXXMBatchContext.documentBuilder();
             final ByteArrayInputStream bais = new ByteArrayInputStream(input.getBytes());
             retval = db.parse(bais);
         } catch (final Exception e) {
@@ -434,4 +542,186 @@ public abstract class IWXXMConverterBase {
         }
         return retval;
     }
+
+    protected static Document parseStreamSourceToDOM(final StreamSource input) throws ConversionException {
+        Document retval = null;
+        try {
+            final DocumentBuilder db = IWXXMBatchContext.documentBuilder();
+            retval = db.parse(SAXSource.sourceToInputSource(input));
+        } catch (final Exception e) {
+            throw new ConversionException("Error in parsing input as to an XML document", e);
+        }
+        return retval;
+    }
+
+    /*
+     * Cached no-argument getter of a JAXB class, invoked using a MethodHandle.
+     * The reflective lookup is done only once per class and getter name.
+     */
+    private static final class PropertyGetter {
+        private static final PropertyGetter NOT_FOUND = new PropertyGetter(null, null);
+        private static final ClassValue<ConcurrentMap<String, PropertyGetter>> GETTERS = new ClassValue<ConcurrentMap<String, PropertyGetter>>() {
+            @Override
+            protected ConcurrentMap<String, PropertyGetter> computeValue(final Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+        private final MethodHandle handle;
+        private final Class<?> returnType;
+
+        private PropertyGetter(final MethodHandle handle, final Class<?> returnType) {
+            this.handle = handle;
+            this.returnType = returnType;
+        }
+
+        /*
+         * Returns the public getter with the given name, or null if the class has no such getter.
+         */
+        static PropertyGetter find(final Class<?> clz, final String getterName) {
+            final PropertyGetter retval = GETTERS.get(clz).computeIfAbsent(getterName, name -> lookup(clz, name));
+            return retval == NOT_FOUND ? null : retval;
+        }
+
+        private static PropertyGetter lookup(final Class<?> clz, final String getterName) {
+            try {
+                final Method method = clz.getMethod(getterName);
+                final MethodHandle handle = MethodHandles.publicLookup().unreflect(method).asType(MethodType.methodType(Object.class, Object.class));
+                return new PropertyGetter(handle, method.getReturnType());
+            } catch (final NoSuchMethodException | IllegalAccessException e) {
+                return NOT_FOUND;
+            }
+        }
+
+        /*
+         * Any exception thrown by the getter is wrapped into a GetterFailedException, for resolving
+         * the property as absent.
+         */
+        Object get(final Object target) {
+            try {
+                return (Object) this.handle.invokeExact(target);
+            } catch (final Throwable t) {
+                throw new GetterFailedException(t);
+            }
+        }
+    }
+
+    private static final class GetterFailedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        GetterFailedException(final Throwable cause) {
+            super(cause);
+        }
+    }
+
+    /*
+     * Creates JAXB objects and their JAXBElement wrappers without reflection or locking on the hot path.
+     *
+     * Equivalent to the xjc generated ObjectFactory methods: the create methods simply call the no-argument constructor,
+     * and the element factory methods wrap the value using the element name and scope declared with @XmlElementDecl.
+     * The constructor and the element declaration are resolved once per class.
+     */
+    private static final class JAXBObjectCreator<T> {
+        private static final ClassValue<JAXBObjectCreator<?>> CREATORS = new ClassValue<JAXBObjectCreator<?>>() {
+            @Override
+            protected JAXBObjectCreator<?> computeValue(final Class<?> type) {
+                return new JAXBObjectCreator<>(type);
+            }
+        };
+
+        private final Class<T> type;
+        private final Supplier<T> constructor;
+        private final QName elementName;
+        private final Class<?> elementScope;
+
+        private JAXBObjectCreator(final Class<T> type) {
+            this.type = type;
+            this.constructor = findConstructor(type);
+            final XmlElementDecl decl = findElementDecl(type);
+            if (decl != null) {
+                this.elementName = new QName(decl.namespace(), decl.name());
+                this.elementScope = decl.scope() == XmlElementDecl.GLOBAL.class ? null : decl.scope();
+            } else {
+                this.elementName = null;
+                this.elementScope = null;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        static <T> JAXBObjectCreator<T> of(final Class<T> type) {
+            return (JAXBObjectCreator<T>) CREATORS.get(type);
+        }
+
+        T create() {
+            if (this.constructor == null) {
+                throw new IllegalArgumentException("Unable to create JAXB element object for type " + this.type);
+            }
+            return this.constructor.get();
+        }
+
+        JAXBElement<T> wrap(final T value) {
+            if (this.elementName == null) {
+                throw new IllegalArgumentException("Unable to create JAXBElement wrapper for type " + this.type);
+            }
+            return new JAXBElement<>(this.elementName, this.type, this.elementScope, value);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Supplier<T> findConstructor(final Class<T> type) {
+            if (Modifier.isAbstract(type.getModifiers()) || type.getAnnotation(XmlType.class) == null) {
+                return null;
+            }
+            final MethodHandle handle;
+            try {
+                handle = MethodHandles.publicLookup().findConstructor(type, MethodType.methodType(void.class));
+            } catch (final NoSuchMethodException | IllegalAccessException e) {
+                return null;
+            }
+            try {
+                //Bind the constructor to a Supplier, so that creating an object is a plain constructor call:
+                final MethodHandles.Lookup lookup = MethodHandles.lookup();
+                final CallSite site = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+                        MethodType.methodType(Object.class), handle, MethodType.methodType(type));
+                return (Supplier<T>) site.getTarget().invoke();
+            } catch (final Throwable t) {
+                LOG.debug("Unable to create a constructor lambda for {}, using a MethodHandle", type, t);
+                final MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+                return () -> {
+                    try {
+                        return (T) (Object) generic.invokeExact();
+                    } catch (final RuntimeException | Error e) {
+                        throw e;
+                    } catch (final Throwable e) {
+                        throw new IllegalArgumentException("Unable to create JAXB element object for type " + type, e);
+                    }
+                };
+            }
+        }
+
+        /*
+         * Finds the element declaration of the ObjectFactory method "create" + simple name without the "Type" suffix,
+         * looking for the ObjectFactory in the package of the type and its parent packages.
+         */
+        private static XmlElementDecl findElementDecl(final Class<?> type) {
+            final String simpleName = type.getSimpleName();
+            if (!simpleName.endsWith("Type") || type.getPackage() == null) {
+                return null;
+            }
+            final String methodName = "create" + simpleName.substring(0, 1).toUpperCase() + simpleName.substring(1, simpleName.lastIndexOf("Type"));
+            String packageName = type.getPackage().getName();
+            while (packageName != null) {
+                try {
+                    final Class<?> objectFactory = Class.forName(packageName + ".ObjectFactory", false, type.getClassLoader());
+                    final Method method = objectFactory.getMethod(methodName, type);
+                    return method.getAnnotation(XmlElementDecl.class);
+                } catch (final ClassNotFoundException cnfe) {
+                    final int nextDot = packageName.lastIndexOf('.');
+                    packageName = nextDot == -1 ? null : packageName.substring(0, nextDot);
+                } catch (final NoSuchMethodException nsme) {
+                    return null;
+                }
+            }
+            return null;
+        }
+    }
 }
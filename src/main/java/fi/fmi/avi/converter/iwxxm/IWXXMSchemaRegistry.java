@@ -0,0 +1,150 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import org.xml.sax.SAXException;
+
+import icao.iwxxm21.ReportType;
+import wmo.collect2014.MeteorologicalBulletinType;
+
+/**
+ * Shared registry of the pre-compiled XML Schemas used for validating IWXXM content.
+ *
+ * Compiling the IWXXM 2.1.1 schema graph (including GML, AIXM, O&amp;M and the WMO schemas) is expensive,
+ * so each schema set is compiled only once, lazily on first use, and then shared between all
+ * the converters. The {@link Schema} objects are immutable and thread-safe.
+ */
+public final class IWXXMSchemaRegistry {
+
+    /**
+     * The sets of XML Schemas the IWXXM content can be validated against.
+     */
+    public enum SchemaSet {
+        /**
+         * IWXXM 2.1.1 messages.
+         */
+        IWXXM("http://icao.int/iwxxm/2.1 https://schemas.wmo.int/iwxxm/2.1.1/iwxxm.xsd "
+                + "http://def.wmo.int/metce/2013 http://schemas.wmo.int/metce/1.2/metce.xsd "
+                + "http://www.opengis.net/samplingSpatial/2.0 http://schemas.opengis.net/samplingSpatial/2.0/spatialSamplingFeature.xsd",
+                "/int/icao/iwxxm/2.1.1/iwxxm.xsd"),
+
+        /**
+         * WMO COLLECT 1.2 bulletins containing IWXXM 2.1.1 messages.
+         */
+        IWXXM_WITH_COLLECT("http://icao.int/iwxxm/2.1 https://schemas.wmo.int/iwxxm/2.1.1/iwxxm.xsd "
+                + "http://def.wmo.int/metce/2013 http://schemas.wmo.int/metce/1.2/metce.xsd "
+                + "http://def.wmo.int/collect/2014 http://schemas.wmo.int/collect/1.2/collect.xsd "
+                + "http://www.opengis.net/samplingSpatial/2.0 http://schemas.opengis.net/samplingSpatial/2.0/spatialSamplingFeature.xsd",
+                "/int/wmo/collect/1.2/collect.xsd", "/int/icao/iwxxm/2.1.1/iwxxm.xsd");
+
+        private final String schemaLocation;
+        private final String[] schemaResources;
+
+        SchemaSet(final String schemaLocation, final String... schemaResources) {
+            this.schemaLocation = schemaLocation;
+            this.schemaResources = schemaResources;
+        }
+
+        /**
+         * Returns the schema set required for validating the given JAXB message type.
+         *
+         * @param clz
+         *         the JAXB type of the message root element
+         *
+         * @return the schema set to validate against
+         */
+        public static SchemaSet forMessageClass(final Class<?> clz) {
+            if (MeteorologicalBulletinType.class.isAssignableFrom(clz)) {
+                return IWXXM_WITH_COLLECT;
+            }
+            return IWXXM;
+        }
+
+        /**
+         * The value for the xsi:schemaLocation attribute of the documents using this schema set.
+         *
+         * @return the schema location
+         */
+        public String getSchemaLocation() {
+            return this.schemaLocation;
+        }
+
+        Source[] getSchemaSources() {
+            final Source[] retval = new Source[this.schemaResources.length];
+            for (int i = 0; i < this.schemaResources.length; i++) {
+                retval[i] = new StreamSource(ReportType.class.getResource(this.schemaResources[i]).toExternalForm());
+            }
+            return retval;
+        }
+    }
+
+    private static final ConcurrentMap<SchemaSet, Schema> SCHEMAS = new ConcurrentHashMap<>();
+    //Separate locks to allow compiling the different schema sets in parallel:
+    private static final Map<SchemaSet, Object> COMPILE_LOCKS = new EnumMap<>(SchemaSet.class);
+    static {
+        for (final SchemaSet schemaSet : SchemaSet.values()) {
+            COMPILE_LOCKS.put(schemaSet, new Object());
+        }
+    }
+
+    private IWXXMSchemaRegistry() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns the compiled Schema for the given schema set. The Schema is compiled on the first call
+     * for each schema set, and the same instance is returned for all the subsequent calls. Once compiled,
+     * the Schema is returned without locking.
+     *
+     * @param schemaSet
+     *         the set of schemas
+     *
+     * @return the compiled Schema
+     *
+     * @throws SAXException
+     *         if the schema cannot be compiled
+     */
+    public static Schema getSchema(final SchemaSet schemaSet) throws SAXException {
+        Schema retval = SCHEMAS.get(schemaSet);
+        if (retval == null) {
+            synchronized (COMPILE_LOCKS.get(schemaSet)) {
+                retval = SCHEMAS.get(schemaSet);
+                if (retval == null) {
+                    retval = compile(schemaSet);
+                    SCHEMAS.put(schemaSet, retval);
+                }
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Compiles all the schema sets in advance. Intended to be called at application start to
+     * avoid paying the schema compilation cost when converting the first messages.
+     *
+     * @throws SAXException
+     *         if any of the schemas cannot be compiled
+     */
+    public static void warmUp() throws SAXException {
+        for (final SchemaSet schemaSet : SchemaSet.values()) {
+            getSchema(schemaSet);
+        }
+    }
+
+    private static Schema compile(final SchemaSet schemaSet) throws SAXException {
+        final SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        schemaFactory.setResourceResolver(IWXXMSchemaResourceResolver.getInstance());
+        //Secure processing does not allow "file" protocol loading for schemas:
+        schemaFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, IWXXMConverterBase.F_SECURE_PROCESSING);
+        return schemaFactory.newSchema(schemaSet.getSchemaSources());
+    }
+}
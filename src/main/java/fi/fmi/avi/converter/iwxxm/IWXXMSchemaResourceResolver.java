@@ -6,8 +6,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.io.IOUtils;
 import org.w3c.dom.ls.LSInput;
@@ -76,17 +76,16 @@ public class IWXXMSchemaResourceResolver implements LSResourceResolver {
         }
     }
 
-    //Singleton
-    private static IWXXMSchemaResourceResolver instance;
+    //Singleton, initialized lazily by the class loader on first access:
+    private static class InstanceHolder {
+        private static final IWXXMSchemaResourceResolver INSTANCE = new IWXXMSchemaResourceResolver();
+    }
 
-    public synchronized static IWXXMSchemaResourceResolver getInstance() {
-        if (instance == null) {
-            instance = new IWXXMSchemaResourceResolver();
-        }
-        return instance;
+    public static IWXXMSchemaResourceResolver getInstance() {
+        return InstanceHolder.INSTANCE;
     }
 
-    private static final Map<String, LSInput> cache = new HashMap<>();
+    private static final ConcurrentMap<String, LSInput> cache = new ConcurrentHashMap<>();
 
     private IWXXMSchemaResourceResolver() {
     }
@@ -96,14 +95,7 @@ public class IWXXMSchemaResourceResolver implements LSResourceResolver {
         NamespaceLocation ns = NamespaceLocation.forURI(namespaceURI);
         if (ns != null) {
             final String key = ns.getFullPathFor(systemId);
-            synchronized (cache) {
-                if (cache.containsKey(key)) {
-                    return cache.get(key);
-                } else {
-                    cache.put(key, new ClassLoaderResourceInput(ns.getFinderClass(), ns.getFullPathFor(systemId), publicId, systemId, baseURI));
-                    return cache.get(key);
-                }
-            }
+            return cache.computeIfAbsent(key, path -> new ClassLoaderResourceInput(ns.getFinderClass(), path, publicId, systemId, baseURI));
         }
         return null;
     }
@@ -113,7 +105,7 @@ public class IWXXMSchemaResourceResolver implements LSResourceResolver {
         private String publicId;
         private String systemId;
         private String baseURI;
-        private char[] cachedContent;
+        private volatile char[] cachedContent;
 
         public ClassLoaderResourceInput(final Class<?> cls, final String path, final String publicId, final String systemId, final String baseURI)
                 throws IllegalArgumentException {
@@ -133,21 +125,24 @@ public class IWXXMSchemaResourceResolver implements LSResourceResolver {
         @Override
         //Only this method is implemented, as the LSParser is guaranteed to try this before the others
         public Reader getCharacterStream() {
-            if (this.cachedContent == null) {
+            //Concurrent first reads may both load the content, the result is the same:
+            char[] content = this.cachedContent;
+            if (content == null) {
                 if (this.url == null) {
                     return null;
                 }
                 try {
                     CharArrayWriter caw = new CharArrayWriter(1024);
                     IOUtils.copy(url.openStream(), caw);
-                    this.cachedContent = caw.toCharArray();
+                    content = caw.toCharArray();
+                    this.cachedContent = content;
 
                 } catch (IOException e) {
                     //NOOP
                 }
             }
-            if (this.cachedContent != null) {
-                return new CharArrayReader(this.cachedContent);
+            if (content != null) {
+                return new CharArrayReader(content);
             } else {
                 return null;
             }
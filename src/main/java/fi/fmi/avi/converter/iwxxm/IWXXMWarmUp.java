@@ -0,0 +1,533 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.xml.namespace.QName;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import fi.fmi.avi.converter.AviMessageSpecificConverter;
+import fi.fmi.avi.converter.ConversionException;
+import fi.fmi.avi.converter.ConversionHints;
+import fi.fmi.avi.converter.ConversionResult;
+import fi.fmi.avi.model.PartialOrCompleteTimeInstant;
+import fi.fmi.avi.model.bulletin.BulletinHeading;
+import fi.fmi.avi.model.bulletin.DataTypeDesignatorT2;
+import fi.fmi.avi.model.bulletin.immutable.BulletinHeadingImpl;
+import fi.fmi.avi.model.taf.TAF;
+import fi.fmi.avi.model.taf.TAFBulletin;
+import fi.fmi.avi.model.taf.immutable.TAFBulletinImpl;
+
+/**
+ * Front-loads the expensive one-time initialization of the IWXXM converters, so that the first real messages
+ * converted do not have to pay for it.
+ *
+ * The warm-up first initializes the shared resources concurrently: the JAXBContext, the compiled XML Schemas,
+ * the compiled Schematron rules and the compiled cleanup stylesheets of the registered serializers. Then the pools of
+ * JAXB Marshallers and Unmarshallers are pre-filled, and finally a synthetic conversion is run with each registered
+ * converter. The time taken by each step is reported in the returned {@link Report}. The shared resources can also be
+ * initialized alone with {@link #initializeSharedResources(Executor)}, and {@link #getReadiness()} can be used for waiting
+ * for them, for example in readiness probes.
+ *
+ * A pre-configured instance is available as a bean in {@link fi.fmi.avi.converter.iwxxm.conf.IWXXMConverter}.
+ */
+public class IWXXMWarmUp {
+    private static final Logger LOG = LoggerFactory.getLogger(IWXXMWarmUp.class);
+    private static final String SAMPLE_LOCATION = "warmup/";
+    private static final String METAR_SAMPLE = "metar.xml";
+    private static final String SPECI_SAMPLE = "speci.xml";
+
+    private final List<Conversion<?>> conversions = new ArrayList<>();
+    private final CompletableFuture<Report> readiness = new CompletableFuture<>();
+    private Executor executor = ForkJoinPool.commonPool();
+
+    /**
+     * Returns the contents of a sample IWXXM document bundled for the warm-up in the requested input format.
+     *
+     * @param resourceName
+     *         the name of the sample document, "taf.xml", "metar.xml" or "speci.xml"
+     * @param inputType
+     *         one of String, byte[], InputStream, Reader or Document
+     * @param <T>
+     *         the input type
+     *
+     * @return supplier creating a new input on each call
+     *
+     * @throws IllegalArgumentException
+     *         if the sample does not exist or the input type is not supported
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Supplier<T> sample(final String resourceName, final Class<T> inputType) throws IllegalArgumentException {
+        final byte[] content = readSample(resourceName);
+        if (String.class.equals(inputType)) {
+            final String str = new String(content, StandardCharsets.UTF_8);
+            return () -> (T) str;
+        } else if (byte[].class.equals(inputType)) {
+            return () -> (T) content.clone();
+        } else if (InputStream.class.equals(inputType)) {
+            return () -> (T) new ByteArrayInputStream(content);
+        } else if (Reader.class.equals(inputType)) {
+            return () -> (T) new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8);
+        } else if (Document.class.equals(inputType)) {
+            return () -> {
+                try {
+                    return (T) IWXXMConverterBase.parseStringToDOM(new String(content, StandardCharsets.UTF_8));
+                } catch (final ConversionException e) {
+                    throw new IllegalStateException("Unable to parse warm-up sample '" + resourceName + "'", e);
+                }
+            };
+        }
+        throw new IllegalArgumentException("Unsupported warm-up input type " + inputType);
+    }
+
+    /**
+     * Returns a message read from a JSON sample bundled for the warm-up, for the serializers of the message types
+     * without a parser. The JSON is read only once, on the first call of the returned supplier.
+     *
+     * @param resourceName
+     *         the name of the sample message, "sigmet.json" or "airmet.json"
+     * @param jsonType
+     *         the type to read the JSON as, such as the immutable message implementation or its builder
+     * @param toMessage
+     *         the function creating the message from the read JSON
+     * @param <J>
+     *         the type the JSON is read as
+     * @param <T>
+     *         the message type
+     *
+     * @return supplier of the message
+     *
+     * @throws IllegalArgumentException
+     *         if the sample does not exist
+     */
+    public static <J, T> Supplier<T> jsonSample(final String resourceName, final Class<J> jsonType, final Function<? super J, ? extends T> toMessage)
+            throws IllegalArgumentException {
+        final byte[] content = readSample(resourceName);
+        return once(() -> {
+            final ObjectMapper om = new ObjectMapper();
+            om.registerModule(new Jdk8Module());
+            om.registerModule(new JavaTimeModule());
+            try {
+                return toMessage.apply(om.readValue(content, jsonType));
+            } catch (final IOException e) {
+                throw new IllegalStateException("Unable to read warm-up sample '" + resourceName + "'", e);
+            }
+        });
+    }
+
+    /**
+     * Returns the message converted from the input by the given converter, for using it as the input of another converter:
+     * a parsed message as the input of a serializer, or a serialized message as the input of a parser.
+     * The input is converted only once, on the first call of the returned supplier.
+     *
+     * @param converter
+     *         the converter
+     * @param input
+     *         the converter input
+     * @param <I>
+     *         the converter input type
+     * @param <T>
+     *         the converter output type
+     *
+     * @return supplier of the converted message
+     */
+    public static <I, T> Supplier<T> converted(final AviMessageSpecificConverter<I, T> converter, final Supplier<I> input) {
+        return once(() -> converter.convertMessage(input.get(), ConversionHints.EMPTY)
+                .getConvertedMessage()
+                .orElseThrow(() -> new IllegalStateException("Unable to convert the warm-up input")));
+    }
+
+    /**
+     * Returns a TAF bulletin containing the given TAF, for warming up the TAF bulletin serializers.
+     * The bulletin is created only once, on the first call of the returned supplier.
+     *
+     * @param taf
+     *         the TAF of the bulletin
+     *
+     * @return supplier of the bulletin
+     */
+    public static Supplier<TAFBulletin> tafBulletin(final Supplier<TAF> taf) {
+        return once(() -> {
+            final ZonedDateTime issueTime = ZonedDateTime.of(2012, 8, 15, 18, 0, 0, 0, ZoneId.of("Z"));
+            return TAFBulletinImpl.builder()//
+                    .setHeading(BulletinHeadingImpl.builder()//
+                            .setDataTypeDesignatorT2(DataTypeDesignatorT2.ForecastsDataTypeDesignatorT2.FCT_AERODROME_VT_LONG)//
+                            .setType(BulletinHeading.Type.NORMAL)//
+                            .setGeographicalDesignator("YU")//
+                            .setLocationIndicator("YUDO")//
+                            .setBulletinNumber(1)//
+                            .setIssueTime(PartialOrCompleteTimeInstant.of(issueTime))//
+                            .build())//
+                    .setTimeStamp(issueTime)//
+                    .addTimeStampFields(ChronoField.YEAR, ChronoField.MONTH_OF_YEAR, ChronoField.DAY_OF_MONTH, ChronoField.HOUR_OF_DAY)//
+                    .addAllMessages(Collections.singletonList(taf.get()))//
+                    .build();
+        });
+    }
+
+    /**
+     * Registers a converter for the warm-up. The converter is run once with the given input.
+     * If the converter is an IWXXM serializer, its cleanup stylesheet is also compiled. If no input
+     * is available for the converter, only the cleanup stylesheet is compiled.
+     *
+     * @param name
+     *         the name of the warm-up step
+     * @param converter
+     *         the converter
+     * @param input
+     *         the supplier of the synthetic input, or null
+     * @param <T>
+     *         the input type
+     *
+     * @return this instance
+     */
+    public <T> IWXXMWarmUp addConversion(final String name, final AviMessageSpecificConverter<T, ?> converter, final Supplier<T> input) {
+        this.conversions.add(new Conversion<>(name, converter, input));
+        return this;
+    }
+
+    /**
+     * Sets the executor used by {@link #warmUp()}, {@link #warmUpAsync()} and {@link #initializeSharedResources()}.
+     * By default the common fork-join pool is used.
+     *
+     * @param executor
+     *         the executor to run the steps
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+    }
+
+    /**
+     * Runs the warm-up using the configured executor, see {@link #warmUp(Executor)}.
+     *
+     * @return the warm-up step timings
+     */
+    public Report warmUp() {
+        return warmUp(this.executor);
+    }
+
+    /**
+     * Runs the warm-up using the given executor for the parallel steps. Blocks until all the steps are done.
+     * The failure of a step does not stop the warm-up, but is recorded in the report.
+     *
+     * @param executor
+     *         the executor to run the steps
+     *
+     * @return the warm-up step timings
+     */
+    public Report warmUp(final Executor executor) {
+        return warmUpAsync(executor).join();
+    }
+
+    /**
+     * Starts the warm-up using the configured executor, see {@link #warmUpAsync(Executor)}.
+     *
+     * @return future completed with the report when all the steps are done
+     */
+    public CompletableFuture<Report> warmUpAsync() {
+        return warmUpAsync(this.executor);
+    }
+
+    /**
+     * Starts the warm-up without blocking: the shared resources are initialized concurrently, then the JAXB object pools
+     * are pre-filled, and finally the synthetic conversions are run concurrently. The readiness returned by {@link #getReadiness()}
+     * is completed when the shared resources have been initialized.
+     *
+     * @param executor
+     *         the executor to run the steps
+     *
+     * @return future completed with the report when all the steps are done
+     */
+    public CompletableFuture<Report> warmUpAsync(final Executor executor) {
+        final long start = System.nanoTime();
+        return initializeSharedResources(executor).thenCompose(resources -> {
+            final List<CompletableFuture<Step>> pools = new ArrayList<>();
+            for (final JAXBObjectPool<?> pool : IWXXMConverterBase.getJAXBObjectPools()) {
+                pools.add(run("Pre-fill " + pool.getName(), () -> pool.prefill(1), executor));
+            }
+            return allOf(pools).thenCompose(poolSteps -> {
+                final List<CompletableFuture<Step>> synthetic = new ArrayList<>();
+                for (final Conversion<?> conversion : this.conversions) {
+                    if (conversion.input != null) {
+                        synthetic.add(CompletableFuture.supplyAsync(conversion::run, executor));
+                    }
+                }
+                return allOf(synthetic).thenApply(conversionSteps -> {
+                    final List<Step> steps = new ArrayList<>(resources.getSteps());
+                    steps.addAll(poolSteps);
+                    steps.addAll(conversionSteps);
+                    final Report retval = new Report(steps, Duration.ofNanos(System.nanoTime() - start));
+                    LOG.info("IWXXM converter warm-up done in {} ms", retval.getTotalDuration().toMillis());
+                    return retval;
+                });
+            });
+        });
+    }
+
+    /**
+     * Starts initializing the shared resources using the configured executor, see {@link #initializeSharedResources(Executor)}.
+     *
+     * @return future completed with the report when all the resources have been initialized
+     */
+    public CompletableFuture<Report> initializeSharedResources() {
+        return initializeSharedResources(this.executor);
+    }
+
+    /**
+     * Starts initializing the expensive shared resources without blocking: the JAXBContext, the XML Schema sets, the
+     * Schematron rules and the cleanup stylesheets of the registered serializers are all built concurrently, so the
+     * time taken is bounded by the slowest of them instead of their sum. The readiness returned by {@link #getReadiness()}
+     * is completed with the first completed initialization report.
+     *
+     * @param executor
+     *         the executor to build the resources
+     *
+     * @return future completed with the report when all the resources have been initialized
+     */
+    public CompletableFuture<Report> initializeSharedResources(final Executor executor) {
+        final long start = System.nanoTime();
+        final List<CompletableFuture<Step>> resources = new ArrayList<>();
+        resources.add(run("JAXBContext", IWXXMConverterBase::getJAXBContext, executor));
+        for (final IWXXMSchemaRegistry.SchemaSet schemaSet : IWXXMSchemaRegistry.SchemaSet.values()) {
+            resources.add(run("XML Schema " + schemaSet, () -> IWXXMSchemaRegistry.getSchema(schemaSet), executor));
+        }
+        resources.add(run("Schematron rules", AbstractJAXBIWXXMParser::getIwxxmTemplates, executor));
+        for (final String messageType : Arrays.asList("METAR", "TAF", "SIGMET")) {
+            resources.add(run("Schematron rules for " + messageType,
+                    () -> AbstractJAXBIWXXMParser.getIwxxmTemplates(new QName("http://icao.int/iwxxm/2.1", messageType)), executor));
+        }
+        for (final Conversion<?> conversion : this.conversions) {
+            if (conversion.converter instanceof AbstractIWXXMSerializer) {
+                final AbstractIWXXMSerializer serializer = (AbstractIWXXMSerializer) conversion.converter;
+                resources.add(run("Cleanup stylesheet for " + conversion.name, () -> serializer.getCleanupTemplates(ConversionHints.EMPTY), executor));
+            }
+        }
+        return allOf(resources).thenApply(steps -> {
+            final Report retval = new Report(steps, Duration.ofNanos(System.nanoTime() - start));
+            LOG.info("IWXXM converter shared resources initialized in {} ms", retval.getTotalDuration().toMillis());
+            this.readiness.complete(retval);
+            return retval;
+        });
+    }
+
+    /**
+     * Returns a future completed when the shared resources have been initialized by {@link #initializeSharedResources(Executor)}
+     * or {@link #warmUpAsync(Executor)}. Intended for readiness probes: the future does not start the initialization,
+     * and is never completed if the initialization is not started.
+     *
+     * @return future completed with the resource initialization report
+     */
+    public CompletableFuture<Report> getReadiness() {
+        //A dependent future, so the callers cannot complete the shared one:
+        return this.readiness.thenApply(report -> report);
+    }
+
+    /**
+     * @return true if the shared resources have been initialized without failures
+     */
+    public boolean isReady() {
+        return this.readiness.isDone() && this.readiness.join().isSuccessful();
+    }
+
+    private static byte[] readSample(final String resourceName) throws IllegalArgumentException {
+        if (SPECI_SAMPLE.equals(resourceName)) {
+            //The SPECI report has the same content model as the METAR, so the METAR sample is reused with the root element renamed:
+            final String metar = new String(readSample(METAR_SAMPLE), StandardCharsets.UTF_8);
+            return metar.replace("<iwxxm:METAR ", "<iwxxm:SPECI ").replace("</iwxxm:METAR>", "</iwxxm:SPECI>").getBytes(StandardCharsets.UTF_8);
+        }
+        try (InputStream is = IWXXMWarmUp.class.getResourceAsStream(SAMPLE_LOCATION + resourceName)) {
+            if (is == null) {
+                throw new IllegalArgumentException("No warm-up sample '" + resourceName + "'");
+            }
+            return IOUtils.toByteArray(is);
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Unable to read warm-up sample '" + resourceName + "'", e);
+        }
+    }
+
+    private static <T> Supplier<T> once(final Supplier<T> supplier) {
+        return new Supplier<T>() {
+            private T value;
+
+            @Override
+            public synchronized T get() {
+                if (this.value == null) {
+                    this.value = supplier.get();
+                }
+                return this.value;
+            }
+        };
+    }
+
+    private static CompletableFuture<Step> run(final String name, final Task task, final Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            final long start = System.nanoTime();
+            try {
+                task.run();
+                return new Step(name, Duration.ofNanos(System.nanoTime() - start), null, null);
+            } catch (final Exception | LinkageError e) {
+                return new Step(name, Duration.ofNanos(System.nanoTime() - start), null, e);
+            }
+        }, executor);
+    }
+
+    private static CompletableFuture<List<Step>> allOf(final List<CompletableFuture<Step>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            final List<Step> retval = new ArrayList<>(futures.size());
+            for (final CompletableFuture<Step> future : futures) {
+                final Step step = future.join();
+                if (step.getFailure().isPresent()) {
+                    LOG.warn("IWXXM converter warm-up step '{}' failed", step.getName(), step.getFailure().get());
+                } else {
+                    LOG.debug("IWXXM converter warm-up step '{}' took {} ms", step.getName(), step.getDuration().toMillis());
+                }
+                retval.add(step);
+            }
+            return retval;
+        });
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    private static class Conversion<T> {
+        private final String name;
+        private final AviMessageSpecificConverter<T, ?> converter;
+        private final Supplier<T> input;
+
+        Conversion(final String name, final AviMessageSpecificConverter<T, ?> converter, final Supplier<T> input) {
+            this.name = name;
+            this.converter = converter;
+            this.input = input;
+        }
+
+        Step run() {
+            final long start = System.nanoTime();
+            try {
+                final ConversionResult<?> result = this.converter.convertMessage(this.input.get(), ConversionHints.EMPTY);
+                return new Step("Conversion " + this.name, Duration.ofNanos(System.nanoTime() - start), result.getStatus(), null);
+            } catch (final RuntimeException | LinkageError e) {
+                return new Step("Conversion " + this.name, Duration.ofNanos(System.nanoTime() - start), null, e);
+            }
+        }
+    }
+
+    /**
+     * The timing and the outcome of a single warm-up step.
+     */
+    public static class Step {
+        private final String name;
+        private final Duration duration;
+        private final ConversionResult.Status conversionStatus;
+        private final Throwable failure;
+
+        Step(final String name, final Duration duration, final ConversionResult.Status conversionStatus, final Throwable failure) {
+            this.name = name;
+            this.duration = duration;
+            this.conversionStatus = conversionStatus;
+            this.failure = failure;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public Duration getDuration() {
+            return this.duration;
+        }
+
+        /**
+         * @return the status of the conversion result, for the synthetic conversion steps
+         */
+        public Optional<ConversionResult.Status> getConversionStatus() {
+            return Optional.ofNullable(this.conversionStatus);
+        }
+
+        public Optional<Throwable> getFailure() {
+            return Optional.ofNullable(this.failure);
+        }
+
+        @Override
+        public String toString() {
+            return this.name + ": " + this.duration.toMillis() + " ms" + (this.conversionStatus != null ? " (" + this.conversionStatus + ")" : "") + (
+                    this.failure != null ? " FAILED: " + this.failure : "");
+        }
+    }
+
+    /**
+     * The results of a warm-up run.
+     */
+    public static class Report {
+        private final List<Step> steps;
+        private final Duration totalDuration;
+
+        Report(final List<Step> steps, final Duration totalDuration) {
+            this.steps = Collections.unmodifiableList(steps);
+            this.totalDuration = totalDuration;
+        }
+
+        /**
+         * @return the steps in the order they were started
+         */
+        public List<Step> getSteps() {
+            return this.steps;
+        }
+
+        /**
+         * @return the wall-clock time of the entire warm-up
+         */
+        public Duration getTotalDuration() {
+            return this.totalDuration;
+        }
+
+        /**
+         * @return true if none of the steps failed with an exception
+         */
+        public boolean isSuccessful() {
+            for (final Step step : this.steps) {
+                if (step.getFailure().isPresent()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("IWXXM converter warm-up, total ").append(this.totalDuration.toMillis()).append(" ms");
+            for (final Step step : this.steps) {
+                sb.append("\n  ").append(step);
+            }
+            return sb.toString();
+        }
+    }
+}
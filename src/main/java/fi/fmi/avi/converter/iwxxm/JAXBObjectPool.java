@@ -0,0 +1,176 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.bind.JAXBException;
+
+/**
+ * A simple bounded pool for JAXB helper objects (Marshallers, Unmarshallers) which are
+ * not thread-safe but are relatively expensive to create and configure.
+ *
+ * The pool never blocks: if there are no idle instances available, a new one is created, and
+ * if the pool is already full when an instance is released, the released instance is discarded.
+ *
+ * The pool keeps counts of the hits (borrowed idle instances), misses (borrows requiring a new instance),
+ * creations (including the ones created by {@link #prefill(int)}) and discarded releases for monitoring
+ * the pool sizing.
+ *
+ * @param <T>
+ *         the type of the pooled objects
+ */
+public class JAXBObjectPool<T> {
+
+    /**
+     * Creates new pre-configured instances for the pool.
+     *
+     * @param <T>
+     *         the type of the pooled objects
+     */
+    @FunctionalInterface
+    public interface Factory<T> {
+        T create() throws JAXBException;
+    }
+
+    /**
+     * The default maximum number of idle instances kept in each pool.
+     */
+    public static final int DEFAULT_MAX_IDLE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final String name;
+    private final BlockingQueue<T> idle;
+    private final Factory<T> factory;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder creations = new LongAdder();
+    private final LongAdder discards = new LongAdder();
+
+    public JAXBObjectPool(final Factory<T> factory) {
+        this(factory, DEFAULT_MAX_IDLE);
+    }
+
+    public JAXBObjectPool(final Factory<T> factory, final int maxIdle) {
+        this("JAXBObjectPool", factory, maxIdle);
+    }
+
+    public JAXBObjectPool(final String name, final Factory<T> factory) {
+        this(name, factory, DEFAULT_MAX_IDLE);
+    }
+
+    public JAXBObjectPool(final String name, final Factory<T> factory, final int maxIdle) {
+        if (maxIdle < 1) {
+            throw new IllegalArgumentException("maxIdle must be positive");
+        }
+        this.name = name;
+        this.factory = factory;
+        this.idle = new ArrayBlockingQueue<>(maxIdle);
+    }
+
+    /**
+     * Takes an idle instance from the pool, or creates a new one if none are available.
+     * The instance must be returned using {@link #release(Object)} after use.
+     *
+     * @return an instance for exclusive use of the caller
+     *
+     * @throws JAXBException
+     *         if a new instance cannot be created
+     */
+    public T borrow() throws JAXBException {
+        final T retval = this.idle.poll();
+        if (retval != null) {
+            this.hits.increment();
+            return retval;
+        }
+        this.misses.increment();
+        return this.create();
+    }
+
+    /**
+     * Creates idle instances into the pool until it contains the given number of idle instances,
+     * or it is full.
+     *
+     * @param count
+     *         the number of idle instances wanted
+     *
+     * @return the number of instances created
+     *
+     * @throws JAXBException
+     *         if a new instance cannot be created
+     */
+    public int prefill(final int count) throws JAXBException {
+        int created = 0;
+        while (this.idle.size() < count && this.idle.remainingCapacity() > 0) {
+            if (!this.idle.offer(this.create())) {
+                break;
+            }
+            created++;
+        }
+        return created;
+    }
+
+    /**
+     * Returns an instance to the pool. The caller must reset any per-use state (such as event handlers)
+     * before releasing the instance, and must not use it after this call.
+     *
+     * @param instance
+     *         the instance to return
+     */
+    public void release(final T instance) {
+        if (instance != null && !this.idle.offer(instance)) {
+            this.discards.increment();
+        }
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return the number of borrows served with an idle instance
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return the number of borrows which had to create a new instance
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return the number of instances created by this pool
+     */
+    public long getCreations() {
+        return this.creations.sum();
+    }
+
+    /**
+     * @return the number of released instances discarded because the pool was full
+     */
+    public long getDiscards() {
+        return this.discards.sum();
+    }
+
+    /**
+     * @return the number of idle instances currently in the pool
+     */
+    public int getIdleCount() {
+        return this.idle.size();
+    }
+
+    @Override
+    public String toString() {
+        return this.name + "[hits=" + this.getHits() + ", misses=" + this.getMisses() + ", creations=" + this.getCreations() + ", discards="
+                + this.getDiscards() + ", idle=" + this.getIdleCount() + "]";
+    }
+
+    private T create() throws JAXBException {
+        final T retval = this.factory.create();
+        this.creations.increment();
+        return retval;
+    }
+
+}
@@ -1,35 +1,35 @@
 package fi.fmi.avi.converter.iwxxm;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 import javax.xml.bind.Binder;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
-import javax.xml.namespace.NamespaceContext;
 import javax.xml.namespace.QName;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
-import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 /**
  * Provides functionality for resolving internal GML (xlink) references within the document.
  */
 public class ReferredObjectRetrievalContext {
+    private static final String GML_NS = "http://www.opengis.net/gml/3.2";
+    private static final String XLINK_NS = "http://www.w3.org/1999/xlink";
+    private static final String OM_NS = "http://www.opengis.net/om/2.0";
+    private static final String XSI_NS = "http://www.w3.org/2001/XMLSchema-instance";
+
     private Map<String, Object> identifiedObjects = new HashMap<>();
-    private Map<String, Map<QName, List<String>>> nilReasons = new HashMap<>();
+    private final Map<Node, Map<QName, List<String>>> nilReasons = new IdentityHashMap<>();
+    private final Map<String, Element> resultContentsById = new HashMap<>();
     private Binder<Node> binder;
 
     /**
@@ -45,75 +45,102 @@ public class ReferredObjectRetrievalContext {
         Objects.requireNonNull(jaxbBinder, "Binder cannot be null");
         this.binder = jaxbBinder;
         try {
-            XPathFactory factory = XPathFactory.newInstance();
-            XPath xpath = factory.newXPath();
-            HashMap<String, String> prefMap = new HashMap<>();
-            prefMap.put("gml", "http://www.opengis.net/gml/3.2");
-            prefMap.put("xlink", "http://www.w3.org/1999/xlink");
-            prefMap.put("om", "http://www.opengis.net/om/2.0");
-            prefMap.put("xsi", "http://www.w3.org/2001/XMLSchema-instance");
-            prefMap.put("iwxxm", "http://icao.int/iwxxm/2.1");
-            SimpleNamespaceContext namespaces = new SimpleNamespaceContext(prefMap);
-            xpath.setNamespaceContext(namespaces);
+            //Find the elements with gml:id which have actually been internally referred to within this document, the
+            //om:result contents and the nilReasons with a single pass over the document:
+            final List<Element> identifiedElements = new ArrayList<>();
+            final Set<String> referredIds = new HashSet<>();
+            final List<Element> resultContents = new ArrayList<>();
+            indexDocument(dom.getDocumentElement(), identifiedElements, referredIds, resultContents, this.nilReasons);
 
             // Force identifying om:result elements in the Node <-> JAXElemement mapping by unmarshalling them explicitly
             // (this are not bound to JAXBElements by default, due to being inside an anyType containing element).
-            XPathExpression expr = xpath.compile("//om:result/*[@gml:id]");
-            NodeList hits = (NodeList) expr.evaluate(dom.getDocumentElement(), XPathConstants.NODESET);
-            for (int i = 0; i < hits.getLength(); i++) {
-                Node hit = hits.item(i);
-                binder.unmarshal(hit);
+            for (final Element resultContent : resultContents) {
+                binder.unmarshal(resultContent);
+                resultContentsById.put(resultContent.getAttributeNS(GML_NS, "id"), resultContent);
             }
 
-            //Find the elements with gml:id which have actually been internally referred to within this document:
-            expr = xpath.compile("//*[@gml:id and //*/@xlink:href=concat('#',@gml:id)]");
-            hits = (NodeList) expr.evaluate(dom.getDocumentElement(), XPathConstants.NODESET);
-            for (int i = 0; i < hits.getLength(); i++) {
-                Node hit = hits.item(i);
-                NamedNodeMap attrs = hit.getAttributes();
-                Node idNode = attrs.getNamedItem("gml:id");
-                Object elem = binder.getJAXBNode(hit);
-                if (elem != null) {
-                    if (elem instanceof JAXBElement) {
-                        elem = ((JAXBElement) elem).getValue();
+            for (final Element identified : identifiedElements) {
+                final String id = identified.getAttributeNS(GML_NS, "id");
+                if (referredIds.contains(id)) {
+                    Object elem = binder.getJAXBNode(identified);
+                    if (elem != null) {
+                        if (elem instanceof JAXBElement) {
+                            elem = ((JAXBElement) elem).getValue();
+                        }
+                        identifiedObjects.put(id, elem);
                     }
-                    identifiedObjects.put(idNode.getNodeValue(), elem);
                 }
             }
+        } catch (JAXBException e) {
+            throw new RuntimeException("Unexpected exception in finding identified GML objects", e);
+        }
+    }
 
-            //Build a lookup hash for nilReason attribute values.
-            //These are not available using JAXB tooling because the xsi:nil="true" elements
-            //evaluate to null objects.
-            expr = xpath.compile("//*[*/@xsi:nil='true' and */@nilReason]");
-            hits = (NodeList) expr.evaluate(dom.getDocumentElement(), XPathConstants.NODESET);
-            for (int i = 0; i < hits.getLength(); i++) {
-                Node parent = hits.item(i);
-                String parentKey = getNodeParentPath(parent);
-                Map<QName, List<String>> reasonsForThisParent = nilReasons.computeIfAbsent(parentKey, (key) -> new HashMap<>());
-                NodeList children = parent.getChildNodes();
-                for (int j = 0; j < children.getLength(); j++) {
-                    Node hit = children.item(j);
-                    if (Node.ELEMENT_NODE == hit.getNodeType()) {
-                        QName childKey = new QName(hit.getNamespaceURI(), hit.getLocalName());
-                        List<String> reasonsForElement = reasonsForThisParent.computeIfAbsent(childKey,(key) -> new ArrayList<>());
-                        NamedNodeMap attrs = hit.getAttributes();
-                        if (attrs != null) {
-                            Node nilReason = attrs.getNamedItem("nilReason");
-                            if (nilReason != null) {
-                                reasonsForElement.add(nilReason.getNodeValue());
-                            } else {
-                                reasonsForElement.add(null);
-                            }
-                        } else {
-                            reasonsForElement.add(null);
-                        }
-                    }
+    /*
+     * Collects the elements with a gml:id, the gml:ids referred to with internal xlink:href references
+     * and the elements with a gml:id directly within om:result elements, in document order.
+     *
+     * Also builds the lookup for nilReason attribute values of the child elements of each element with xsi:nil="true" children.
+     * These are not available using JAXB tooling because the xsi:nil="true" elements evaluate to null objects.
+     */
+    private static void indexDocument(final Element element, final List<Element> identifiedElements, final Set<String> referredIds,
+            final List<Element> resultContents, final Map<Node, Map<QName, List<String>>> nilReasons) {
+        if (element.hasAttributeNS(GML_NS, "id")) {
+            identifiedElements.add(element);
+        }
+        final String href = element.getAttributeNS(XLINK_NS, "href");
+        if (href.startsWith("#")) {
+            referredIds.add(href.substring(1));
+        }
+        final boolean isResult = OM_NS.equals(element.getNamespaceURI()) && "result".equals(element.getLocalName());
+        boolean hasNilChildren = false;
+        boolean hasNilReasonChildren = false;
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (Node.ELEMENT_NODE == child.getNodeType()) {
+                final Element childElement = (Element) child;
+                if (isResult && childElement.hasAttributeNS(GML_NS, "id")) {
+                    resultContents.add(childElement);
                 }
+                hasNilChildren = hasNilChildren || "true".equals(childElement.getAttributeNS(XSI_NS, "nil"));
+                hasNilReasonChildren = hasNilReasonChildren || childElement.hasAttribute("nilReason");
+                indexDocument(childElement, identifiedElements, referredIds, resultContents, nilReasons);
             }
-
-        } catch (XPathExpressionException | JAXBException e) {
-            throw new RuntimeException("Unexpected exception in finding identified GML objects", e);
         }
+        if (hasNilChildren && hasNilReasonChildren) {
+            final Map<QName, List<String>> reasonsForThisParent = new HashMap<>();
+            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (Node.ELEMENT_NODE == child.getNodeType()) {
+                    final Element childElement = (Element) child;
+                    final QName childKey = new QName(childElement.getNamespaceURI(), childElement.getLocalName());
+                    reasonsForThisParent.computeIfAbsent(childKey, (key) -> new ArrayList<>())
+                            .add(childElement.hasAttribute("nilReason") ? childElement.getAttribute("nilReason") : null);
+                }
+            }
+            nilReasons.put(element, reasonsForThisParent);
+        }
+    }
+
+    /**
+     * Constructor for subclasses building the reference index by other means than by scanning a DOM document.
+     *
+     * @param jaxbBinder
+     *         binder used for unmarshalling DOM Nodes, see {@link #unmarshal(Node, Class)}
+     */
+    protected ReferredObjectRetrievalContext(final Binder<Node> jaxbBinder) {
+        Objects.requireNonNull(jaxbBinder, "Binder cannot be null");
+        this.binder = jaxbBinder;
+    }
+
+    /**
+     * Registers a JAXB object as the target of the internal references to the given gml:id.
+     *
+     * @param gmlId
+     *         the gml:id of the object
+     * @param object
+     *         the referred JAXB object
+     */
+    protected void registerIdentifiedObject(final String gmlId, final Object object) {
+        identifiedObjects.put(gmlId, object);
     }
 
     /**
@@ -149,70 +176,46 @@ public class ReferredObjectRetrievalContext {
     }
 
     public Optional<String> getNilReasonForNthChild(final Object jaxbElement, final QName elementName, int index) {
-        Node n = this.binder.getXMLNode(jaxbElement);
-        String pathKey = getNodeParentPath(n);
-        Map<QName, List<String>> reasonsForParent = this.nilReasons.get(pathKey);
+        final Map<QName, List<String>> reasonsForParent = this.nilReasons.get(this.binder.getXMLNode(jaxbElement));
         if (reasonsForParent != null) {
-            List<String> reasonsForElement = reasonsForParent.get(elementName);
+            final List<String> reasonsForElement = reasonsForParent.get(elementName);
             if (reasonsForElement != null && reasonsForElement.size() > index) {
-                return Optional.of(reasonsForElement.get(index));
-            } else {
-                return Optional.empty();
+                return Optional.ofNullable(reasonsForElement.get(index));
             }
-        } else {
-            return Optional.empty();
         }
+        return Optional.empty();
     }
 
-    private String getNodeParentPath(final Node n) {
-        Node parent = n.getParentNode();
-        if (parent == null) {
-            return null;
-        }
-        Node child = n;
-        List<String> path = new ArrayList<>();
-        StringBuilder sb;
-        NodeList children;
-        int childIndex = 0;
-        while (parent != null) {
-            Node idAttr = child.getAttributes().getNamedItem("gml:id");
-            sb = new StringBuilder();
-            sb.append(child.getNamespaceURI());
-            sb.append(':');
-            sb.append(child.getLocalName());
-            sb.append('[');
-            if (idAttr != null) {
-                sb.append("@gml:id=");
-                sb.append('\'');
-                sb.append(idAttr.getNodeValue());
-                sb.append('\'');
-            }
-            children = parent.getChildNodes();
-            childIndex = -1;
-            for (int i = 0; i < children.getLength(); i++) {
-                Node c = children.item(i);
-                if (Node.ELEMENT_NODE == c.getNodeType() && (c.getNamespaceURI() + c.getLocalName()).equals(child.getNamespaceURI() + child.getLocalName())) {
-                    childIndex++;
-                    if (c == child) {
-                        break;
-                    }
-                }
-            }
-            if (idAttr == null) {
-                sb.append(childIndex);
-            }
-            sb.append(']');
-            path.add(sb.toString());
-            child = parent;
-            if (idAttr != null) {
-                parent = null;
-            } else {
-                parent = parent.getParentNode();
+    /**
+     * Unmarshals a DOM Node within the document (such as the contents of an om:result element) using the
+     * JAXB Binder of this context, so that the created objects can be used with this context.
+     *
+     * The om:result contents returned by JAXB may be copies of the document nodes. For identified om:result contents the
+     * corresponding node of the document is unmarshalled instead, so that the nilReason lookups keyed by the document nodes apply.
+     *
+     * @param node
+     *         the node to unmarshal
+     * @param clz
+     *         the expected JAXB type
+     * @param <T>
+     *         the expected JAXB type
+     *
+     * @return the unmarshalled element
+     *
+     * @throws JAXBException
+     *         if the node cannot be unmarshalled
+     */
+    public <T> JAXBElement<T> unmarshal(final Node node, final Class<T> clz) throws JAXBException {
+        Node toUnmarshal = node;
+        if (Node.ELEMENT_NODE == node.getNodeType() && ((Element) node).hasAttributeNS(GML_NS, "id")) {
+            final Element inDocument = this.resultContentsById.get(((Element) node).getAttributeNS(GML_NS, "id"));
+            if (inDocument != null) {
+                toUnmarshal = inDocument;
             }
         }
-        Collections.reverse(path);
-        return String.join("/", path);
+        return this.binder.unmarshal(toUnmarshal, clz);
     }
+
     /**
      * Get the JAXBinder object associated with this instance.
      *
@@ -221,29 +224,4 @@ public class ReferredObjectRetrievalContext {
     public Binder<Node> getJAXBBinder() {
         return this.binder;
     }
-
-    private static class SimpleNamespaceContext implements NamespaceContext {
-
-        private Map<String, String> prefMap = new HashMap<>();
-
-        public SimpleNamespaceContext(final Map<String, String> prefMap) {
-            this.prefMap.putAll(prefMap);
-        }
-
-        @Override
-        public String getNamespaceURI(final String prefix) {
-            return prefMap.get(prefix);
-        }
-
-        @Override
-        public String getPrefix(final String uri) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public Iterator<?> getPrefixes(final String uri) {
-            throw new UnsupportedOperationException();
-        }
-
-    }
 }
@@ -0,0 +1,671 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Source;
+
+import net.sf.saxon.s9api.Axis;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XPathCompiler;
+import net.sf.saxon.s9api.XPathExecutable;
+import net.sf.saxon.s9api.XPathSelector;
+import net.sf.saxon.s9api.XdmItem;
+import net.sf.saxon.s9api.XdmNode;
+import net.sf.saxon.s9api.XdmNodeKind;
+import net.sf.saxon.s9api.XdmSequenceIterator;
+import net.sf.saxon.s9api.XdmValue;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Evaluates Schematron rules directly as compiled XPath expressions, without running the Schematron XSLT
+ * and building the SVRL report document.
+ *
+ * The rules are extracted from a Schematron validation stylesheet generated with the ISO Schematron skeleton
+ * (such as the IWXXM 2.1.1 rule/iwxxm.xsl), so they always match the official XSLT rules. Each pattern is one template
+ * mode of the stylesheet, and each rule is a template in that mode with the rule context as the match pattern. As in the
+ * XSLT, the elements of the document are visited in document order for each pattern in turn, and only the highest priority
+ * matching rule of a pattern fires for each element. The failed assertions are returned in the same order as the
+ * svrl:failed-assert elements of the XSLT result.
+ *
+ * If the stylesheet contains constructs not understood by the engine (such as XSLT functions or keys), the engine is
+ * marked as unsupported (see {@link #isSupported()}) and the XSLT should be used instead.
+ *
+ * A subset of the patterns can be selected for documents known not to contain certain elements using
+ * {@link #select(Set)}, for example to skip the TAF specific patterns when validating METARs.
+ *
+ * The XPath selectors of the rules are loaded once per validated document and reused for each node, binding the global
+ * variables only once. The selectors are confined to the validating thread.
+ *
+ * Instances are immutable and thread-safe.
+ */
+public final class SchematronRuleEngine {
+    private static final String XSL_NS = "http://www.w3.org/1999/XSL/Transform";
+    private static final String SVRL_NS = "http://purl.oclc.org/dsdl/svrl";
+    private static final java.util.regex.Pattern NAME_TEST = java.util.regex.Pattern.compile(
+            "(@|attribute::)?\\b([A-Za-z_][\\w.\\-]*):([A-Za-z_][\\w.\\-]*)(?![\\w.\\-]*\\s*\\()");
+
+    private final Processor processor;
+    private final List<Variable> globals;
+    private final List<Pattern> patterns;
+    private final boolean visitAttributes;
+    private final String unsupportedReason;
+
+    private SchematronRuleEngine(final Processor processor, final List<Variable> globals, final List<Pattern> patterns, final boolean visitAttributes,
+            final String unsupportedReason) {
+        this.processor = processor;
+        this.globals = globals;
+        this.patterns = patterns;
+        this.visitAttributes = visitAttributes;
+        this.unsupportedReason = unsupportedReason;
+    }
+
+    /**
+     * Extracts the rules from the given Schematron XSLT stylesheet.
+     *
+     * @param stylesheet
+     *         the location of the stylesheet generated from the Schematron rules
+     *
+     * @return the engine, check {@link #isSupported()} before use
+     *
+     * @throws IOException
+     *         if the stylesheet cannot be read
+     * @throws SAXException
+     *         if the stylesheet cannot be parsed
+     */
+    public static SchematronRuleEngine compile(final URL stylesheet) throws IOException, SAXException {
+        final Document xsl;
+        try (InputStream is = stylesheet.openStream()) {
+            final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setNamespaceAware(true);
+            xsl = dbf.newDocumentBuilder().parse(is, stylesheet.toExternalForm());
+        } catch (final ParserConfigurationException e) {
+            throw new SAXException("Unable to create a parser for the stylesheet", e);
+        }
+        final Processor processor = new Processor(false);
+        try {
+            return new Compiler(processor, xsl).compile();
+        } catch (final UnsupportedConstructException e) {
+            return new SchematronRuleEngine(processor, Collections.emptyList(), Collections.emptyList(), false, e.getMessage());
+        }
+    }
+
+    /**
+     * @return true if all the rules of the stylesheet could be extracted
+     */
+    public boolean isSupported() {
+        return this.unsupportedReason == null;
+    }
+
+    /**
+     * @return the reason the stylesheet is not supported, or null if it is supported
+     */
+    public String getUnsupportedReason() {
+        return this.unsupportedReason;
+    }
+
+    /**
+     * Returns an engine with only the patterns that can have an effect on documents not containing any of the given elements.
+     *
+     * A pattern is left out if the context of each of its rules contains a step naming one of the absent elements, outside
+     * any predicates. Such a rule can never fire on the documents, as the matched node would have to be, or be inside,
+     * one of the absent elements.
+     *
+     * @param absentElements
+     *         the names of the elements not present in the documents to validate
+     *
+     * @return the engine for the selected subset of patterns
+     */
+    public SchematronRuleEngine select(final Set<QName> absentElements) {
+        if (!isSupported()) {
+            return this;
+        }
+        final List<Pattern> selected = new ArrayList<>();
+        for (final Pattern pattern : this.patterns) {
+            if (pattern.canFire(absentElements)) {
+                selected.add(pattern);
+            }
+        }
+        return new SchematronRuleEngine(this.processor, this.globals, Collections.unmodifiableList(selected), this.visitAttributes, null);
+    }
+
+    /**
+     * @return the XSLT modes of the patterns of this engine, in evaluation order
+     */
+    public List<String> getPatternModes() {
+        final List<String> retval = new ArrayList<>();
+        for (final Pattern pattern : this.patterns) {
+            retval.add(pattern.mode);
+        }
+        return retval;
+    }
+
+    /**
+     * Validates the document.
+     *
+     * @param source
+     *         the XML document
+     *
+     * @return the texts of the failed assertions, in the order they would appear in the SVRL report
+     *
+     * @throws SaxonApiException
+     *         if the document cannot be read, or the evaluation of a rule fails
+     * @throws IllegalStateException
+     *         if the engine is not supported
+     */
+    public List<String> validate(final Source source) throws SaxonApiException {
+        if (!isSupported()) {
+            throw new IllegalStateException("Unsupported Schematron stylesheet: " + this.unsupportedReason);
+        }
+        //A single copy of the document to a Saxon tree, all the rules are evaluated against it:
+        final XdmNode document = this.processor.newDocumentBuilder().build(source);
+        final Evaluation evaluation = new Evaluation();
+        for (final Variable global : this.globals) {
+            evaluation.bindings.put(global.name, global.value.load(document, evaluation).evaluate());
+        }
+        final List<String> retval = new ArrayList<>();
+        for (final Pattern pattern : this.patterns) {
+            visitChildren(document, pattern, evaluation, retval);
+        }
+        return retval;
+    }
+
+    private void visitChildren(final XdmNode node, final Pattern pattern, final Evaluation evaluation, final List<String> failed) throws SaxonApiException {
+        if (this.visitAttributes && node.getNodeKind() == XdmNodeKind.ELEMENT) {
+            final XdmSequenceIterator attributes = node.axisIterator(Axis.ATTRIBUTE);
+            while (attributes.hasNext()) {
+                pattern.fire((XdmNode) attributes.next(), evaluation, failed);
+            }
+        }
+        final XdmSequenceIterator children = node.axisIterator(Axis.CHILD);
+        while (children.hasNext()) {
+            final XdmNode child = (XdmNode) children.next();
+            if (child.getNodeKind() == XdmNodeKind.ELEMENT) {
+                pattern.fire(child, evaluation, failed);
+                visitChildren(child, pattern, evaluation, failed);
+            }
+        }
+    }
+
+    /*
+     * The state of the validation of one document: the values of the global variables, and the XPath selectors
+     * loaded so far. Only used by the validating thread.
+     */
+    private static final class Evaluation {
+        private final Map<QName, XdmValue> bindings = new HashMap<>();
+        private final Map<Expression, XPathSelector> selectors = new IdentityHashMap<>();
+    }
+
+    private static final class Pattern {
+        private final String mode;
+        private final List<Rule> rules;
+
+        Pattern(final String mode, final List<Rule> rules) {
+            this.mode = mode;
+            this.rules = rules;
+        }
+
+        boolean canFire(final Set<QName> absentElements) {
+            for (final Rule rule : this.rules) {
+                if (rule.canFire(absentElements)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void fire(final XdmNode node, final Evaluation evaluation, final List<String> failed) throws SaxonApiException {
+            for (final Rule rule : this.rules) {
+                if (rule.context.load(node, evaluation).effectiveBooleanValue()) {
+                    rule.evaluate(node, evaluation, failed);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final class Rule {
+        private final Expression context;
+        private final List<Set<QName>> contextAnchors;
+        private final double priority;
+        private final int declarationIndex;
+        private final List<Object> steps;
+
+        Rule(final Expression context, final List<Set<QName>> contextAnchors, final double priority, final int declarationIndex, final List<Object> steps) {
+            this.context = context;
+            this.contextAnchors = contextAnchors;
+            this.priority = priority;
+            this.declarationIndex = declarationIndex;
+            this.steps = steps;
+        }
+
+        boolean canFire(final Set<QName> absentElements) {
+            for (final Set<QName> branchAnchors : this.contextAnchors) {
+                if (Collections.disjoint(branchAnchors, absentElements)) {
+                    return true;
+                }
+            }
+            return this.contextAnchors.isEmpty();
+        }
+
+        void evaluate(final XdmNode node, final Evaluation evaluation, final List<String> failed) throws SaxonApiException {
+            Map<QName, XdmValue> localBindings = Collections.emptyMap();
+            for (final Object step : this.steps) {
+                if (step instanceof Variable) {
+                    if (localBindings.isEmpty()) {
+                        localBindings = new HashMap<>();
+                    }
+                    final Variable variable = (Variable) step;
+                    localBindings.put(variable.name, variable.value.load(node, evaluation, localBindings).evaluate());
+                } else {
+                    final Assertion assertion = (Assertion) step;
+                    if (!assertion.test.load(node, evaluation, localBindings).effectiveBooleanValue()) {
+                        failed.add(assertion.message(node, evaluation, localBindings));
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Variable {
+        private final QName name;
+        private final Expression value;
+
+        Variable(final QName name, final Expression value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    private static final class Assertion {
+        private final Expression test;
+        private final List<Object> messageParts;
+
+        Assertion(final Expression test, final List<Object> messageParts) {
+            this.test = test;
+            this.messageParts = messageParts;
+        }
+
+        String message(final XdmNode node, final Evaluation evaluation, final Map<QName, XdmValue> localBindings) throws SaxonApiException {
+            final StringBuilder sb = new StringBuilder();
+            for (final Object part : this.messageParts) {
+                if (part instanceof Expression) {
+                    //As xsl:value-of, separating the items with a space:
+                    boolean first = true;
+                    for (final XdmItem item : ((Expression) part).load(node, evaluation, localBindings).evaluate()) {
+                        if (!first) {
+                            sb.append(' ');
+                        }
+                        sb.append(item.getStringValue());
+                        first = false;
+                    }
+                } else {
+                    sb.append(part);
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    private static final class Expression {
+        private final XPathExecutable executable;
+        private final List<QName> globalVariables;
+        private final List<QName> localVariables;
+
+        Expression(final XPathExecutable executable, final List<QName> globalVariables, final List<QName> localVariables) {
+            this.executable = executable;
+            this.globalVariables = globalVariables;
+            this.localVariables = localVariables;
+        }
+
+        XPathSelector load(final XdmItem contextItem, final Evaluation evaluation) throws SaxonApiException {
+            return load(contextItem, evaluation, Collections.emptyMap());
+        }
+
+        /*
+         * Returns the selector of this expression for the document, loading it on first use. The global variables
+         * are bound only once, the context item and the rule variables for each node.
+         */
+        XPathSelector load(final XdmItem contextItem, final Evaluation evaluation, final Map<QName, XdmValue> localBindings) throws SaxonApiException {
+            XPathSelector retval = evaluation.selectors.get(this);
+            if (retval == null) {
+                retval = this.executable.load();
+                bind(retval, this.globalVariables, evaluation.bindings);
+                evaluation.selectors.put(this, retval);
+            }
+            retval.setContextItem(contextItem);
+            bind(retval, this.localVariables, localBindings);
+            return retval;
+        }
+
+        private static void bind(final XPathSelector selector, final List<QName> variables, final Map<QName, XdmValue> bindings) throws SaxonApiException {
+            for (final QName variable : variables) {
+                final XdmValue value = bindings.get(variable);
+                if (value != null) {
+                    selector.setVariable(variable, value);
+                }
+            }
+        }
+    }
+
+    /*
+     * Extracts the patterns and rules from the structure produced by the ISO Schematron skeleton.
+     */
+    private static final class Compiler {
+        private final Processor processor;
+        private final Element root;
+        private final Map<String, String> namespaces = new LinkedHashMap<>();
+        private final List<QName> globalNames = new ArrayList<>();
+        private boolean visitAttributes = false;
+
+        Compiler(final Processor processor, final Document xsl) {
+            this.processor = processor;
+            this.root = xsl.getDocumentElement();
+        }
+
+        SchematronRuleEngine compile() throws UnsupportedConstructException {
+            if (!isXsl(this.root, "stylesheet") && !isXsl(this.root, "transform")) {
+                throw new UnsupportedConstructException("Not an XSLT stylesheet");
+            }
+            collectNamespaces(this.root);
+
+            final List<Variable> globals = new ArrayList<>();
+            final List<String> modes = new ArrayList<>();
+            final Map<String, List<Rule>> rulesByMode = new HashMap<>();
+            final List<Element> templates = new ArrayList<>();
+            for (final Element child : childElements(this.root)) {
+                if (isXsl(child, "variable") || isXsl(child, "param")) {
+                    final Variable global = variable(child, this.globalNames);
+                    globals.add(global);
+                    this.globalNames.add(global.name);
+                } else if (isXsl(child, "function") || isXsl(child, "key") || isXsl(child, "import") || isXsl(child, "include")) {
+                    throw new UnsupportedConstructException("Unsupported top-level element xsl:" + child.getLocalName());
+                } else if (isXsl(child, "template")) {
+                    if ("/".equals(child.getAttribute("match")) && !child.hasAttribute("mode")) {
+                        collectPatternModes(child, modes);
+                    } else {
+                        templates.add(child);
+                    }
+                }
+            }
+            if (modes.isEmpty()) {
+                throw new UnsupportedConstructException("No Schematron patterns found");
+            }
+            final Set<String> modeSet = new HashSet<>(modes);
+            int index = 0;
+            for (final Element template : templates) {
+                final String mode = template.getAttribute("mode");
+                if (!modeSet.contains(mode)) {
+                    continue;
+                }
+                final String match = template.getAttribute("match").trim();
+                if ("text()".equals(match) || "/".equals(match)) {
+                    continue;
+                } else if (match.replace(" ", "").contains("@*|node()")) {
+                    //The default traversal template of the pattern:
+                    for (final Element apply : descendantElements(template, XSL_NS, "apply-templates")) {
+                        if (apply.getAttribute("select").contains("@*")) {
+                            this.visitAttributes = true;
+                        }
+                    }
+                    continue;
+                }
+                if (!template.hasAttribute("priority")) {
+                    throw new UnsupportedConstructException("Rule template without a priority: " + match);
+                }
+                final double priority;
+                try {
+                    priority = Double.parseDouble(template.getAttribute("priority"));
+                } catch (final NumberFormatException e) {
+                    throw new UnsupportedConstructException("Invalid rule template priority: " + template.getAttribute("priority"));
+                }
+                rulesByMode.computeIfAbsent(mode, m -> new ArrayList<>()).add(rule(template, match, priority, index++));
+            }
+
+            final List<Pattern> patterns = new ArrayList<>();
+            for (final String mode : modes) {
+                final List<Rule> rules = rulesByMode.getOrDefault(mode, Collections.emptyList());
+                //XSLT conflict resolution: the highest priority, and the last declared for equal priorities:
+                rules.sort((r1, r2) -> r1.priority != r2.priority ? Double.compare(r2.priority, r1.priority)
+                        : Integer.compare(r2.declarationIndex, r1.declarationIndex));
+                patterns.add(new Pattern(mode, rules));
+            }
+            return new SchematronRuleEngine(this.processor, globals, patterns, this.visitAttributes, null);
+        }
+
+        private void collectPatternModes(final Element rootTemplate, final List<String> modes) {
+            for (final Element apply : descendantElements(rootTemplate, XSL_NS, "apply-templates")) {
+                if ("/".equals(apply.getAttribute("select").trim()) && apply.hasAttribute("mode") && !modes.contains(apply.getAttribute("mode"))) {
+                    modes.add(apply.getAttribute("mode"));
+                }
+            }
+        }
+
+        private Rule rule(final Element template, final String match, final double priority, final int index) throws UnsupportedConstructException {
+            final Expression context = compile(match, this.globalNames, true);
+            final List<QName> inScope = new ArrayList<>(this.globalNames);
+            final List<Object> steps = new ArrayList<>();
+            for (final Element child : childElements(template)) {
+                if (isXsl(child, "variable")) {
+                    final Variable variable = variable(child, inScope);
+                    steps.add(variable);
+                    inScope.add(variable.name);
+                } else if (isXsl(child, "choose")) {
+                    steps.add(assertion(child, inScope));
+                } else if (isXsl(child, "if")) {
+                    //Successful reports are not collected, only check that this is one:
+                    if (descendantElements(child, SVRL_NS, "successful-report").isEmpty()) {
+                        throw new UnsupportedConstructException("Unsupported xsl:if in rule " + match);
+                    }
+                } else if (isXsl(child, "apply-templates") || (SVRL_NS.equals(child.getNamespaceURI()) && "fired-rule".equals(child.getLocalName()))) {
+                    //Traversal and reporting, NOOP
+                } else {
+                    throw new UnsupportedConstructException("Unsupported element " + child.getNodeName() + " in rule " + match);
+                }
+            }
+            return new Rule(context, contextAnchors(match), priority, index, steps);
+        }
+
+        private Assertion assertion(final Element choose, final List<QName> inScope) throws UnsupportedConstructException {
+            final List<Element> branches = childElements(choose);
+            if (branches.size() != 2 || !isXsl(branches.get(0), "when") || !isXsl(branches.get(1), "otherwise") || !childElements(branches.get(0))
+                    .isEmpty()) {
+                throw new UnsupportedConstructException("Unsupported xsl:choose structure");
+            }
+            final List<Element> failedAsserts = descendantElements(branches.get(1), SVRL_NS, "failed-assert");
+            if (failedAsserts.size() != 1) {
+                throw new UnsupportedConstructException("Unsupported xsl:otherwise structure");
+            }
+            final Expression test = compile(branches.get(0).getAttribute("test"), inScope, false);
+            final List<Object> messageParts = new ArrayList<>();
+            final List<Element> texts = descendantElements(failedAsserts.get(0), SVRL_NS, "text");
+            if (!texts.isEmpty()) {
+                for (Node part = texts.get(0).getFirstChild(); part != null; part = part.getNextSibling()) {
+                    if (part.getNodeType() == Node.TEXT_NODE || part.getNodeType() == Node.CDATA_SECTION_NODE) {
+                        messageParts.add(part.getNodeValue());
+                    } else if (part.getNodeType() == Node.ELEMENT_NODE) {
+                        final Element element = (Element) part;
+                        if (isXsl(element, "value-of") && element.hasAttribute("select") && !element.hasAttribute("separator")) {
+                            messageParts.add(compile(element.getAttribute("select"), inScope, false));
+                        } else if (isXsl(element, "text")) {
+                            messageParts.add(element.getTextContent());
+                        } else {
+                            throw new UnsupportedConstructException("Unsupported element " + element.getNodeName() + " in assertion message");
+                        }
+                    }
+                }
+            }
+            return new Assertion(test, messageParts);
+        }
+
+        private Variable variable(final Element declaration, final List<QName> inScope) throws UnsupportedConstructException {
+            final String name = declaration.getAttribute("name");
+            if (name.indexOf(':') != -1 || !declaration.hasAttribute("select") || !childElements(declaration).isEmpty()) {
+                throw new UnsupportedConstructException("Unsupported variable declaration " + name);
+            }
+            return new Variable(new QName(name), compile(declaration.getAttribute("select"), inScope, false));
+        }
+
+        private Expression compile(final String xpath, final List<QName> inScope, final boolean pattern) throws UnsupportedConstructException {
+            final XPathCompiler compiler = this.processor.newXPathCompiler();
+            for (final Map.Entry<String, String> ns : this.namespaces.entrySet()) {
+                compiler.declareNamespace(ns.getKey(), ns.getValue());
+            }
+            for (final QName variable : inScope) {
+                compiler.declareVariable(variable);
+            }
+            try {
+                final XPathExecutable executable = pattern ? compiler.compilePattern(xpath) : compiler.compile(xpath);
+                //The rule variables are declared after all the global ones:
+                final int globalCount = Math.min(this.globalNames.size(), inScope.size());
+                return new Expression(executable, new ArrayList<>(inScope.subList(0, globalCount)),
+                        new ArrayList<>(inScope.subList(globalCount, inScope.size())));
+            } catch (final SaxonApiException e) {
+                throw new UnsupportedConstructException("Unable to compile " + (pattern ? "pattern" : "expression") + " '" + xpath + "': " + e.getMessage());
+            }
+        }
+
+        /*
+         * The element names in the path steps of each union branch of the pattern, leaving out predicates,
+         * parenthesized sub-expressions, literals and attribute steps. A branch can only match inside
+         * elements with all of these names. Branches using except or intersect are left without anchors.
+         */
+        private List<Set<QName>> contextAnchors(final String match) {
+            final List<Set<QName>> retval = new ArrayList<>();
+            for (final String branch : splitTopLevelUnion(match)) {
+                final Set<QName> anchors = new HashSet<>();
+                final String path = stripNested(branch);
+                if (path.matches(".*\\b(except|intersect)\\b.*")) {
+                    retval.add(anchors);
+                    continue;
+                }
+                final java.util.regex.Matcher m = NAME_TEST.matcher(path);
+                while (m.find()) {
+                    final String ns = this.namespaces.get(m.group(2));
+                    if (m.group(1) == null && ns != null) {
+                        anchors.add(new QName(ns, m.group(3)));
+                    }
+                }
+                retval.add(anchors);
+            }
+            return retval;
+        }
+
+        private static List<String> splitTopLevelUnion(final String match) {
+            final List<String> retval = new ArrayList<>();
+            int depth = 0;
+            char quote = 0;
+            int start = 0;
+            for (int i = 0; i < match.length(); i++) {
+                final char c = match.charAt(i);
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '\'' || c == '"') {
+                    quote = c;
+                } else if (c == '[' || c == '(') {
+                    depth++;
+                } else if (c == ']' || c == ')') {
+                    depth--;
+                } else if (c == '|' && depth == 0) {
+                    retval.add(match.substring(start, i));
+                    start = i + 1;
+                }
+            }
+            retval.add(match.substring(start));
+            return retval;
+        }
+
+        private static String stripNested(final String branch) {
+            final StringBuilder sb = new StringBuilder();
+            int depth = 0;
+            char quote = 0;
+            for (int i = 0; i < branch.length(); i++) {
+                final char c = branch.charAt(i);
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '\'' || c == '"') {
+                    quote = c;
+                } else if (c == '[' || c == '(') {
+                    depth++;
+                } else if (c == ']' || c == ')') {
+                    depth--;
+                } else if (depth == 0) {
+                    sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+
+        private void collectNamespaces(final Element element) {
+            final NamedNodeMap attributes = element.getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                final Attr attribute = (Attr) attributes.item(i);
+                if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI()) && !XMLConstants.XMLNS_ATTRIBUTE.equals(
+                        attribute.getLocalName())) {
+                    this.namespaces.putIfAbsent(attribute.getLocalName(), attribute.getValue());
+                }
+            }
+            for (final Element child : childElements(element)) {
+                collectNamespaces(child);
+            }
+        }
+
+        private static boolean isXsl(final Element element, final String localName) {
+            return XSL_NS.equals(element.getNamespaceURI()) && localName.equals(element.getLocalName());
+        }
+
+        private static List<Element> childElements(final Element parent) {
+            final List<Element> retval = new ArrayList<>();
+            for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    retval.add((Element) child);
+                }
+            }
+            return retval;
+        }
+
+        private static List<Element> descendantElements(final Element parent, final String namespace, final String localName) {
+            final List<Element> retval = new ArrayList<>();
+            for (final Element child : childElements(parent)) {
+                if (namespace.equals(child.getNamespaceURI()) && localName.equals(child.getLocalName())) {
+                    retval.add(child);
+                }
+                retval.addAll(descendantElements(child, namespace, localName));
+            }
+            return retval;
+        }
+    }
+
+    private static final class UnsupportedConstructException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedConstructException(final String message) {
+            super(message);
+        }
+    }
+}
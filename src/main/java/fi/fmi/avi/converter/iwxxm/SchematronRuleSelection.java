@@ -0,0 +1,194 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Selects and pre-compiles the subset of the IWXXM Schematron rules relevant for each message type.
+ *
+ * The IWXXM Schematron rules cover all the message types, but most of the patterns only apply to the elements of
+ * a single message type: a METAR never contains the TAF forecast records, for example. The message type is determined
+ * from the root element of the document, and the patterns which can only fire inside elements of the other message
+ * types are left out, see {@link SchematronRuleEngine#select(Set)}. Both the XSLT and the native rules are compiled
+ * once per message type. For documents with other root elements, such as bulletins, the full rule set is used.
+ */
+final class SchematronRuleSelection {
+    private static final Logger LOG = LoggerFactory.getLogger(SchematronRuleSelection.class);
+    private static final String IWXXM_NS = "http://icao.int/iwxxm/2.1";
+    private static final String XSL_NS = "http://www.w3.org/1999/XSL/Transform";
+    private static final String SVRL_NS = "http://purl.oclc.org/dsdl/svrl";
+
+    /*
+     * The IWXXM elements only occurring in a single message type, by message type. The first element
+     * is the root element used as the name of the message type.
+     */
+    private static final List<List<String>> MESSAGE_TYPE_ELEMENTS = Collections.unmodifiableList(Arrays.asList(//
+            Arrays.asList("METAR", "SPECI", "MeteorologicalAerodromeObservationRecord", "MeteorologicalAerodromeTrendForecastRecord"),//
+            Arrays.asList("TAF", "MeteorologicalAerodromeForecastRecord"),//
+            Arrays.asList("SIGMET", "VolcanicAshSIGMET", "TropicalCycloneSIGMET"),//
+            Arrays.asList("AIRMET"),//
+            Arrays.asList("TropicalCycloneAdvisory"),//
+            Arrays.asList("VolcanicAshAdvisory")));
+
+    private final URL stylesheet;
+    private final Supplier<Templates> allTemplates;
+    private final Supplier<SchematronRuleEngine> allRules;
+    private final ConcurrentMap<String, Templates> templatesByMessageType = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, SchematronRuleEngine> rulesByMessageType = new ConcurrentHashMap<>();
+
+    /**
+     * @param stylesheet
+     *         the location of the Schematron XSLT
+     * @param allTemplates
+     *         the compiled Schematron XSLT with all the rules
+     * @param allRules
+     *         the native rules extracted from the same XSLT
+     */
+    SchematronRuleSelection(final URL stylesheet, final Supplier<Templates> allTemplates, final Supplier<SchematronRuleEngine> allRules) {
+        this.stylesheet = stylesheet;
+        this.allTemplates = allTemplates;
+        this.allRules = allRules;
+    }
+
+    /**
+     * Returns the name of the message type for the given root element.
+     *
+     * @param rootElement
+     *         the root element of the document
+     *
+     * @return the message type, or null if the root element is not the root element of any known IWXXM message type
+     */
+    static String getMessageType(final QName rootElement) {
+        if (rootElement == null || !IWXXM_NS.equals(rootElement.getNamespaceURI())) {
+            return null;
+        }
+        for (final List<String> elements : MESSAGE_TYPE_ELEMENTS) {
+            if (elements.contains(rootElement.getLocalPart())) {
+                return elements.get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the compiled Schematron XSLT with only the patterns relevant for documents with the given root element.
+     *
+     * @param rootElement
+     *         the root element of the document, or null if not known
+     *
+     * @return the compiled stylesheet
+     */
+    Templates getTemplates(final QName rootElement) {
+        final String messageType = getMessageType(rootElement);
+        if (messageType == null) {
+            return this.allTemplates.get();
+        }
+        return this.templatesByMessageType.computeIfAbsent(messageType, this::compileTemplates);
+    }
+
+    /**
+     * Returns the native Schematron rules with only the patterns relevant for documents with the given root element.
+     *
+     * @param rootElement
+     *         the root element of the document, or null if not known
+     *
+     * @return the rules
+     */
+    SchematronRuleEngine getRules(final QName rootElement) {
+        final String messageType = getMessageType(rootElement);
+        if (messageType == null) {
+            return this.allRules.get();
+        }
+        return this.rulesByMessageType.computeIfAbsent(messageType, type -> this.allRules.get().select(absentElements(type)));
+    }
+
+    private static Set<net.sf.saxon.s9api.QName> absentElements(final String messageType) {
+        final Set<net.sf.saxon.s9api.QName> retval = new HashSet<>();
+        for (final List<String> elements : MESSAGE_TYPE_ELEMENTS) {
+            if (!elements.get(0).equals(messageType)) {
+                for (final String element : elements) {
+                    retval.add(new net.sf.saxon.s9api.QName(IWXXM_NS, element));
+                }
+            }
+        }
+        return retval;
+    }
+
+    /*
+     * Removes the applying of the unselected pattern modes from the root template of the Schematron XSLT
+     * and compiles the result. The rule templates of the removed patterns are left in place, unused.
+     */
+    private Templates compileTemplates(final String messageType) {
+        final SchematronRuleEngine allRules = this.allRules.get();
+        if (!allRules.isSupported()) {
+            return this.allTemplates.get();
+        }
+        final Set<String> selectedModes = new HashSet<>(allRules.select(absentElements(messageType)).getPatternModes());
+        try {
+            final Document xsl;
+            try (InputStream is = this.stylesheet.openStream()) {
+                final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+                dbf.setNamespaceAware(true);
+                xsl = dbf.newDocumentBuilder().parse(is, this.stylesheet.toExternalForm());
+            }
+            int removed = 0;
+            final NodeList applies = xsl.getElementsByTagNameNS(XSL_NS, "apply-templates");
+            for (int i = applies.getLength() - 1; i >= 0; i--) {
+                final Element apply = (Element) applies.item(i);
+                if ("/".equals(apply.getAttribute("select").trim()) && apply.hasAttribute("mode") && !selectedModes.contains(apply.getAttribute("mode"))
+                        && isInRootTemplate(apply)) {
+                    final Element activePattern = previousElementSibling(apply);
+                    if (activePattern != null && SVRL_NS.equals(activePattern.getNamespaceURI()) && "active-pattern".equals(activePattern.getLocalName())) {
+                        activePattern.getParentNode().removeChild(activePattern);
+                    }
+                    apply.getParentNode().removeChild(apply);
+                    removed++;
+                }
+            }
+            LOG.debug("Compiling IWXXM Schematron rules for {} with {} of {} patterns", messageType, selectedModes.size(), selectedModes.size() + removed);
+            return TransformerFactory.newInstance().newTemplates(new DOMSource(xsl, this.stylesheet.toExternalForm()));
+        } catch (final Exception e) {
+            throw new RuntimeException("Unable to compile the IWXXM Schematron rules for " + messageType, e);
+        }
+    }
+
+    private static boolean isInRootTemplate(final Element element) {
+        for (Node parent = element.getParentNode(); parent instanceof Element; parent = parent.getParentNode()) {
+            final Element parentElement = (Element) parent;
+            if (XSL_NS.equals(parentElement.getNamespaceURI()) && "template".equals(parentElement.getLocalName())) {
+                return "/".equals(parentElement.getAttribute("match")) && !parentElement.hasAttribute("mode");
+            }
+        }
+        return false;
+    }
+
+    private static Element previousElementSibling(final Element element) {
+        for (Node sibling = element.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling()) {
+            if (sibling.getNodeType() == Node.ELEMENT_NODE) {
+                return (Element) sibling;
+            }
+        }
+        return null;
+    }
+}
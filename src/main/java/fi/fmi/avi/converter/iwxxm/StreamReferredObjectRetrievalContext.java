@@ -0,0 +1,280 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.xml.bind.Binder;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import net.opengis.om20.OMObservationType;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Provides functionality for resolving internal GML (xlink) references within documents unmarshalled directly
+ * from an {@link XMLStreamReader}, without a DOM Document.
+ *
+ * The references and the nil reasons are collected by an {@link Indexer} while JAXB unmarshals the document. Only the
+ * objects actually referred to within the document and the parent objects of the elements with a nilReason are indexed.
+ * The contents of om:result elements are unmarshalled by JAXB as DOM fragments (they are of type xs:anyType), these are handled
+ * using a JAXB Binder, as in {@link ReferredObjectRetrievalContext}.
+ */
+public class StreamReferredObjectRetrievalContext extends ReferredObjectRetrievalContext {
+    private static final String GML_NS = IWXXMNamespaceContext.getURI("gml");
+    private static final String XLINK_NS = IWXXMNamespaceContext.getURI("xlink");
+
+    private final Map<Object, Map<QName, List<String>>> nilReasons;
+
+    private StreamReferredObjectRetrievalContext(final Indexer indexer, final Binder<Node> jaxbBinder) throws JAXBException {
+        super(jaxbBinder);
+        this.nilReasons = indexer.nilReasons;
+        final Set<String> unresolved = new HashSet<>();
+        for (final String id : indexer.referencedIds) {
+            final Object target = indexer.identifiedCandidates.get(id);
+            if (target != null) {
+                registerIdentifiedObject(id, target);
+            } else {
+                unresolved.add(id);
+            }
+        }
+        if (!unresolved.isEmpty()) {
+            //Objects referred to from within the om:result contents:
+            for (final Element result : indexer.resultFragments) {
+                for (Node child = result.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    if (Node.ELEMENT_NODE == child.getNodeType() && ((Element) child).hasAttributeNS(GML_NS, "id")) {
+                        jaxbBinder.unmarshal(child);
+                        registerFragmentObjects((Element) child, unresolved, jaxbBinder);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public Optional<String> getNilReasonForNthChild(final Object jaxbElement, final QName elementName, final int index) {
+        final Map<QName, List<String>> reasonsForParent = this.nilReasons.get(jaxbElement);
+        if (reasonsForParent != null) {
+            final List<String> reasonsForElement = reasonsForParent.get(elementName);
+            if (reasonsForElement != null && reasonsForElement.size() > index) {
+                return Optional.ofNullable(reasonsForElement.get(index));
+            }
+            return Optional.empty();
+        }
+        //Objects unmarshalled from the om:result DOM fragments:
+        final Node parent = getJAXBBinder().getXMLNode(jaxbElement);
+        if (parent != null) {
+            int count = -1;
+            for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (Node.ELEMENT_NODE == child.getNodeType() && elementName.getLocalPart().equals(child.getLocalName()) && elementName.getNamespaceURI()
+                        .equals(child.getNamespaceURI() == null ? "" : child.getNamespaceURI())) {
+                    count++;
+                    if (count == index) {
+                        final Element hit = (Element) child;
+                        return hit.hasAttribute("nilReason") ? Optional.of(hit.getAttribute("nilReason")) : Optional.empty();
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private void registerFragmentObjects(final Element element, final Set<String> unresolved, final Binder<Node> jaxbBinder) {
+        final String id = element.getAttributeNS(GML_NS, "id");
+        if (unresolved.contains(id)) {
+            Object target = jaxbBinder.getJAXBNode(element);
+            if (target instanceof JAXBElement) {
+                target = ((JAXBElement<?>) target).getValue();
+            }
+            if (target != null) {
+                registerIdentifiedObject(id, target);
+                unresolved.remove(id);
+            }
+        }
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (Node.ELEMENT_NODE == child.getNodeType()) {
+                registerFragmentObjects((Element) child, unresolved, jaxbBinder);
+            }
+        }
+    }
+
+    /**
+     * Collects the reference index from the stream events while the document is unmarshalled.
+     *
+     * Usage: pass the indexer to {@link Unmarshaller#unmarshal(XMLStreamReader)} in place of the original reader
+     * after registering its listener using {@link Unmarshaller#setListener(Unmarshaller.Listener)}, then create the
+     * context using {@link #createRetrievalContext(Binder)}. The wrapped reader must be positioned at the start of the document.
+     *
+     * An indexer can only be used for one document.
+     */
+    public static class Indexer extends StreamReaderDelegate {
+        private final Deque<Frame> frames = new ArrayDeque<>();
+        private final Set<String> referencedIds = new HashSet<>();
+        private final Map<String, Object> identifiedCandidates = new HashMap<>();
+        private final Map<Object, Map<QName, List<String>>> nilReasons = new IdentityHashMap<>();
+        private final List<Element> resultFragments = new ArrayList<>();
+        private final Unmarshaller.Listener listener = new Unmarshaller.Listener() {
+            @Override
+            public void beforeUnmarshal(final Object target, final Object parent) {
+                //JAXB creates the objects when the start tag of the element is read:
+                final Frame current = frames.peek();
+                if (current != null && !(target instanceof JAXBElement)) {
+                    current.addTarget(target);
+                    if (current.id != null) {
+                        identifiedCandidates.putIfAbsent(current.id, target);
+                    }
+                }
+            }
+
+            @Override
+            public void afterUnmarshal(final Object target, final Object parent) {
+                if (target instanceof OMObservationType) {
+                    final Object result = ((OMObservationType) target).getResult();
+                    if (result instanceof Element) {
+                        resultFragments.add((Element) result);
+                    }
+                }
+            }
+        };
+
+        public Indexer(final XMLStreamReader reader) {
+            super(reader);
+        }
+
+        /**
+         * Returns the listener to register with the Unmarshaller reading from this indexer.
+         *
+         * @return the unmarshal listener
+         */
+        public Unmarshaller.Listener getListener() {
+            return this.listener;
+        }
+
+        /**
+         * Creates the retrieval context for the unmarshalled document.
+         *
+         * @param jaxbBinder
+         *         a new binder for unmarshalling the om:result contents
+         *
+         * @return the context
+         *
+         * @throws JAXBException
+         *         if the om:result contents with referred objects cannot be unmarshalled
+         */
+        public ReferredObjectRetrievalContext createRetrievalContext(final Binder<Node> jaxbBinder) throws JAXBException {
+            return new StreamReferredObjectRetrievalContext(this, jaxbBinder);
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            final int event = super.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                final Frame parent = this.frames.peek();
+                if (parent != null) {
+                    parent.childStarted(getName(), getAttributeValue(null, "nilReason"));
+                }
+                this.frames.push(new Frame(getAttributeValue(GML_NS, "id")));
+                final String href = getAttributeValue(XLINK_NS, "href");
+                if (href != null && href.startsWith("#")) {
+                    this.referencedIds.add(href.substring(1));
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                final Frame ended = this.frames.pop();
+                if (ended.childNilReasons != null && ended.targets != null) {
+                    for (final Object target : ended.targets) {
+                        this.nilReasons.put(target, ended.childNilReasons);
+                    }
+                }
+            }
+            return event;
+        }
+
+        /*
+         * Overridden to make sure all the events pass through next().
+         */
+        @Override
+        public int nextTag() throws XMLStreamException {
+            int event = next();
+            while ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) && isWhiteSpace()
+                    || event == XMLStreamConstants.SPACE || event == XMLStreamConstants.PROCESSING_INSTRUCTION || event == XMLStreamConstants.COMMENT) {
+                event = next();
+            }
+            if (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT) {
+                throw new XMLStreamException("Expected start or end tag", getLocation());
+            }
+            return event;
+        }
+
+        /*
+         * Overridden to make sure all the events pass through next().
+         */
+        @Override
+        public String getElementText() throws XMLStreamException {
+            if (getEventType() != XMLStreamConstants.START_ELEMENT) {
+                throw new XMLStreamException("Current event is not a start tag", getLocation());
+            }
+            final StringBuilder sb = new StringBuilder();
+            int event = next();
+            while (event != XMLStreamConstants.END_ELEMENT) {
+                if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE
+                        || event == XMLStreamConstants.ENTITY_REFERENCE) {
+                    sb.append(getText());
+                } else if (event == XMLStreamConstants.START_ELEMENT || event == XMLStreamConstants.END_DOCUMENT) {
+                    throw new XMLStreamException("Unexpected event while reading element text", getLocation());
+                }
+                event = next();
+            }
+            return sb.toString();
+        }
+    }
+
+    private static class Frame {
+        private final String id;
+        private List<Object> targets;
+        private Map<QName, Integer> childCounts;
+        private Map<QName, List<String>> childNilReasons;
+
+        Frame(final String id) {
+            this.id = id;
+        }
+
+        void addTarget(final Object target) {
+            if (this.targets == null) {
+                this.targets = new ArrayList<>(1);
+            }
+            this.targets.add(target);
+        }
+
+        void childStarted(final QName name, final String nilReason) {
+            if (this.childCounts == null) {
+                this.childCounts = new HashMap<>();
+            }
+            final int index = this.childCounts.merge(name, 1, Integer::sum) - 1;
+            if (nilReason != null) {
+                if (this.childNilReasons == null) {
+                    this.childNilReasons = new HashMap<>();
+                }
+                final List<String> reasons = this.childNilReasons.computeIfAbsent(name, key -> new ArrayList<>());
+                while (reasons.size() < index) {
+                    reasons.add(null);
+                }
+                reasons.add(nilReason);
+            }
+        }
+    }
+}
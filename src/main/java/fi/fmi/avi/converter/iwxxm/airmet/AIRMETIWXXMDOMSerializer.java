@@ -13,4 +13,10 @@ public class AIRMETIWXXMDOMSerializer extends AbstractAIRMETIWXXMSerializer<Docu
     protected Document render(final AIRMETType airmet, final ConversionHints hints) throws ConversionException {
         return this.renderXMLDocument(airmet, hints);
     }
+
+    @Override
+    protected Document render(final AIRMETType airmet, final ConversionHints hints, final ConverterValidationEventHandler eventHandler)
+            throws ConversionException {
+        return this.renderXMLDocument(airmet, AIRMETType.class, hints, eventHandler);
+    }
 }
@@ -1,7 +1,5 @@
 package fi.fmi.avi.converter.iwxxm.airmet;
 
-import org.w3c.dom.Document;
-
 import fi.fmi.avi.converter.ConversionException;
 import fi.fmi.avi.converter.ConversionHints;
 import icao.iwxxm21.AIRMETType;
@@ -10,7 +8,12 @@ public class AIRMETIWXXMStringSerializer extends AbstractAIRMETIWXXMSerializer<S
 
     @Override
     protected String render(final AIRMETType airmet, final ConversionHints hints) throws ConversionException {
-        final Document result = renderXMLDocument(airmet, hints);
-        return renderDOMToString(result, hints);
+        return renderXMLString(airmet, hints);
+    }
+
+    @Override
+    protected String render(final AIRMETType airmet, final ConversionHints hints, final ConverterValidationEventHandler eventHandler)
+            throws ConversionException {
+        return renderXMLString(airmet, AIRMETType.class, hints, eventHandler);
     }
 }
\ No newline at end of file
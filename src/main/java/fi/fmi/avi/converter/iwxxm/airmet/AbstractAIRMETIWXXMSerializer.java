@@ -2,16 +2,19 @@ package fi.fmi.avi.converter.iwxxm.airmet;
 
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.net.URL;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
 import javax.xml.bind.JAXBElement;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
+import javax.xml.namespace.QName;
 
 import net.opengis.gml32.AbstractRingPropertyType;
 import net.opengis.gml32.AbstractTimeObjectType;
@@ -62,13 +65,15 @@ import aero.aixm511.UnitTimeSlicePropertyType;
 import aero.aixm511.UnitTimeSliceType;
 import aero.aixm511.UnitType;
 import aero.aixm511.ValDistanceVerticalType;
-import fi.fmi.avi.converter.AviMessageSpecificConverter;
 import fi.fmi.avi.converter.ConversionException;
 import fi.fmi.avi.converter.ConversionHints;
 import fi.fmi.avi.converter.ConversionIssue;
 import fi.fmi.avi.converter.ConversionResult;
 import fi.fmi.avi.converter.ConversionResult.Status;
 import fi.fmi.avi.converter.iwxxm.AbstractIWXXMSerializer;
+import fi.fmi.avi.converter.iwxxm.IWXXMBatchConverter;
+import fi.fmi.avi.converter.iwxxm.IWXXMCleanupFilter;
+import fi.fmi.avi.converter.iwxxm.IWXXMNamespaceContext;
 import fi.fmi.avi.model.AviationCodeListUser;
 import fi.fmi.avi.model.Geometry;
 import fi.fmi.avi.model.NumericMeasure;
@@ -96,9 +101,33 @@ import icao.iwxxm21.UnitPropertyType;
 import icao.iwxxm21.WeatherCausingVisibilityReductionType;
 import wmo.metce2013.ProcessType;
 
-public abstract class AbstractAIRMETIWXXMSerializer<T> extends AbstractIWXXMSerializer implements AviMessageSpecificConverter<AIRMET, T> {
+public abstract class AbstractAIRMETIWXXMSerializer<T> extends AbstractIWXXMSerializer implements IWXXMBatchConverter<AIRMET, T> {
     protected abstract T render(final AIRMETType airmet, final ConversionHints hints) throws ConversionException;
 
+    /**
+     * Validates the AIRMET against the XML Schema and renders it. By default the validation is done
+     * as a separate pass before rendering, serializers producing XML output override this to validate while rendering.
+     *
+     * @param airmet
+     *         the AIRMET to render
+     * @param hints
+     *         conversion hints
+     * @param eventHandler
+     *         the handler collecting the validation issues
+     *
+     * @return the rendered AIRMET, or null if the validation failed
+     *
+     * @throws ConversionException
+     *         if the AIRMET cannot be rendered
+     */
+    protected T render(final AIRMETType airmet, final ConversionHints hints, final ConverterValidationEventHandler eventHandler) throws ConversionException {
+        this.validateDocument(airmet, AIRMETType.class, hints, eventHandler);
+        if (eventHandler.errorsFound()) {
+            return null;
+        }
+        return this.render(airmet, hints);
+    }
+
     /**
      * Converts a TAF object into another format.
      *
@@ -214,7 +243,7 @@ public abstract class AbstractAIRMETIWXXMSerializer<T> extends AbstractIWXXMSeri
             result.setStatus(Status.SUCCESS);
             this.updateMessageMetadata(input, result, airmet);
             ConverterValidationEventHandler eventHandler = new ConverterValidationEventHandler(result);
-            this.validateDocument(airmet, AIRMETType.class, hints, eventHandler);
+            final T rendered = this.render(airmet, hints, eventHandler);
 
             if (eventHandler.errorsFound()) {
                 result.setStatus(Status.FAIL);
@@ -222,7 +251,7 @@ public abstract class AbstractAIRMETIWXXMSerializer<T> extends AbstractIWXXMSeri
                     System.err.println("Validation issue: "+iss.getMessage());
                 }
             } else {
-                result.setConvertedMessage(this.render(airmet, hints));
+                result.setConvertedMessage(rendered);
             }
         } catch (ConversionException e) {
             result.setStatus(Status.FAIL);
@@ -737,4 +766,28 @@ public abstract class AbstractAIRMETIWXXMSerializer<T> extends AbstractIWXXMSeri
         }
         return retval;
     }
+
+    @Override
+    protected URL getCleanupTransformationStylesheetLocation(ConversionHints hints) throws ConversionException {
+        URL retval = this.getClass().getResource("AIRMETCleanup.xsl");
+        if (retval == null) {
+            throw new ConversionException("Error accessing cleanup XSLT sheet file");
+        }
+        return retval;
+    }
+
+    @Override
+    protected IWXXMCleanupFilter createCleanupFilter(final ConversionHints hints) {
+        //Same rules as in AIRMETCleanup.xsl:
+        return new IWXXMCleanupFilter(Arrays.asList(new QName(IWXXMNamespaceContext.getURI("gml"), "boundedBy"),
+                new QName(IWXXMNamespaceContext.getURI("aixm"), "upperLimit"),
+                new QName(IWXXMNamespaceContext.getURI("aixm"), "upperLimitReference"),
+                new QName(IWXXMNamespaceContext.getURI("iwxxm"), "movingSpeed"),
+                new QName(IWXXMNamespaceContext.getURI("iwxxm"), "movingDirection"),
+                new QName(IWXXMNamespaceContext.getURI("aixm"), "lowerLimit"),
+                new QName(IWXXMNamespaceContext.getURI("aixm"), "lowerLimitReference"),
+                new QName(IWXXMNamespaceContext.getURI("aixm"), "designatorICAO"),
+                new QName(IWXXMNamespaceContext.getURI("aixm"), "horizontalAccuracy")),
+                Collections.singletonList(new QName(IWXXMNamespaceContext.getURI("iwxxm"), "AIRMETEvolvingCondition")));
+    }
 }
@@ -1,6 +1,7 @@
 package fi.fmi.avi.converter.iwxxm.bulletin;
 
 import java.io.InputStream;
+import java.net.URL;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -9,6 +10,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 import net.opengis.gml32.AbstractFeatureType;
 
@@ -18,6 +20,8 @@ import fi.fmi.avi.converter.ConversionHints;
 import fi.fmi.avi.converter.ConversionIssue;
 import fi.fmi.avi.converter.ConversionResult;
 import fi.fmi.avi.converter.iwxxm.AbstractIWXXMSerializer;
+import fi.fmi.avi.converter.iwxxm.IWXXMBatchContext;
+import fi.fmi.avi.converter.iwxxm.IWXXMBatchConverter;
 import fi.fmi.avi.model.AviationWeatherMessage;
 import fi.fmi.avi.model.bulletin.MeteorologicalBulletin;
 import fi.fmi.avi.util.GTSExchangeFileInfo;
@@ -33,9 +37,10 @@ import wmo.collect2014.MeteorologicalInformationMemberPropertyType;
  *         bulletin content JAXB type
  */
 public abstract class AbstractBulletinIWXXMSerializer<T, S extends AviationWeatherMessage, V extends AbstractFeatureType, U extends MeteorologicalBulletin<S>>
-        extends AbstractIWXXMSerializer implements AviMessageSpecificConverter<U, T> {
+        extends AbstractIWXXMSerializer implements IWXXMBatchConverter<U, T> {
 
     private AviMessageSpecificConverter<S, V> contentMessageConverter;
+    private Executor memberExecutor;
 
     @Override
     protected InputStream getCleanupTransformationStylesheet(ConversionHints hints) throws ConversionException {
@@ -46,14 +51,64 @@ public abstract class AbstractBulletinIWXXMSerializer<T, S extends AviationWeath
         return retval;
     }
 
+    @Override
+    protected URL getCleanupTransformationStylesheetLocation(ConversionHints hints) throws ConversionException {
+        URL retval = this.getClass().getResource("WMOCollectCleanup.xsl");
+        if (retval == null) {
+            throw new ConversionException("Error accessing cleanup XSLT sheet file");
+        }
+        return retval;
+    }
+
     protected abstract T render(final MeteorologicalBulletinType taf, ConversionHints hints) throws ConversionException;
 
+    /**
+     * Validates the bulletin against the XML Schema and renders it. By default the validation is done
+     * as a separate pass before rendering, serializers producing XML output override this to validate while rendering.
+     *
+     * @param bulletin
+     *         the bulletin to render
+     * @param hints
+     *         conversion hints
+     * @param eventHandler
+     *         the handler collecting the validation issues
+     *
+     * @return the rendered bulletin, or null if the validation failed
+     *
+     * @throws ConversionException
+     *         if the bulletin cannot be rendered
+     */
+    protected T render(final MeteorologicalBulletinType bulletin, final ConversionHints hints, final ConverterValidationEventHandler eventHandler)
+            throws ConversionException {
+        validateDocument(bulletin, MeteorologicalBulletinType.class, hints, eventHandler);
+        if (eventHandler.errorsFound()) {
+            return null;
+        }
+        return this.render(bulletin, hints);
+    }
+
     protected abstract Class<V> getMessageJAXBClass();
 
     public void setMessageConverter(final AviMessageSpecificConverter<S, V> converter) {
         this.contentMessageConverter = converter;
     }
 
+    /**
+     * Sets the executor for converting the bulletin messages in parallel. The bulletin is validated and rendered
+     * in the calling thread once all the messages have been converted.
+     *
+     * The calling thread converts the messages not yet started by the executor instead of waiting for them, so the
+     * executor may be the same bounded pool the bulletins are converted on, for example with
+     * {@link #convertBatch(List, ConversionHints, Executor)}. A separate executor still gives better
+     * parallelism in that case, as the messages then do not compete with the bulletins for the threads.
+     *
+     * @param executor
+     *         the executor to convert the messages on, or null (the default) to convert them in the calling thread
+     */
+    public void setMemberExecutor(final Executor executor) {
+        this.memberExecutor = executor;
+    }
+
     /**
      * Converts a single message.
      *
@@ -111,22 +166,23 @@ public abstract class AbstractBulletinIWXXMSerializer<T, S extends AviationWeath
 
         bulletin.setBulletinIdentifier(info.build().toGTSExchangeFileName());
 
+        //The members are converted in parallel if an executor is set, the results are in the order of the members:
+        final List<ConversionResult<V>> messageResults = IWXXMBatchContext.convertBatch(this.contentMessageConverter, input.getMessages(), hints,
+                this.memberExecutor);
         final List<V> outputMessages = new ArrayList<>();
-        ConversionResult<V> messageResult;
         ConversionResult.Status worstStatus = ConversionResult.Status.SUCCESS;
-        for (final S inputMessage : input.getMessages()) {
-            messageResult = this.contentMessageConverter.convertMessage(inputMessage, hints);
+        for (final ConversionResult<V> messageResult : messageResults) {
             if (ConversionResult.Status.SUCCESS != messageResult.getStatus()) {
                 if (ConversionResult.Status.isMoreCritical(messageResult.getStatus(), worstStatus)) {
                     worstStatus = messageResult.getStatus();
                 }
                 result.addIssue(messageResult.getConversionIssues());
             }
-            result.setStatus(worstStatus);
             if (messageResult.getConvertedMessage().isPresent()) {
                 outputMessages.add(messageResult.getConvertedMessage().get());
             }
         }
+        result.setStatus(worstStatus);
         MeteorologicalInformationMemberPropertyType memberProp;
         for (final V outputMessage : outputMessages) {
             memberProp = create(MeteorologicalInformationMemberPropertyType.class);
@@ -135,11 +191,11 @@ public abstract class AbstractBulletinIWXXMSerializer<T, S extends AviationWeath
         }
         try {
             final ConverterValidationEventHandler eventHandler = new ConverterValidationEventHandler(result);
-            validateDocument(bulletin, MeteorologicalBulletinType.class, hints, eventHandler);
+            final T rendered = this.render(bulletin, hints, eventHandler);
             if (eventHandler.errorsFound()) {
                 result.setStatus(ConversionResult.Status.FAIL);
             } else {
-                result.setConvertedMessage(this.render(bulletin, hints));
+                result.setConvertedMessage(rendered);
             }
         } catch (final ConversionException e) {
             result.setStatus(ConversionResult.Status.FAIL);
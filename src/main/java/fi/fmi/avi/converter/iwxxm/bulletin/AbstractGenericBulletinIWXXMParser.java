@@ -1,5 +1,6 @@
 package fi.fmi.avi.converter.iwxxm.bulletin;
 
+import java.io.IOException;
 import java.time.Instant;
 import java.time.Month;
 import java.time.ZoneId;
@@ -8,30 +9,74 @@ import java.time.temporal.ChronoField;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executor;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.validation.Validator;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
-import fi.fmi.avi.converter.AviMessageSpecificConverter;
 import fi.fmi.avi.converter.ConversionException;
 import fi.fmi.avi.converter.ConversionHints;
 import fi.fmi.avi.converter.ConversionIssue;
 import fi.fmi.avi.converter.ConversionResult;
+import fi.fmi.avi.converter.IssueList;
+import fi.fmi.avi.converter.iwxxm.AbstractJAXBIWXXMParser;
+import fi.fmi.avi.converter.iwxxm.IWXXMBatchConverter;
+import fi.fmi.avi.converter.iwxxm.IWXXMConversionHints;
 import fi.fmi.avi.converter.iwxxm.IWXXMConverterBase;
+import fi.fmi.avi.converter.iwxxm.IWXXMSchemaRegistry;
 import fi.fmi.avi.model.GenericAviationWeatherMessage;
 import fi.fmi.avi.model.bulletin.BulletinHeading;
 import fi.fmi.avi.model.bulletin.GenericMeteorologicalBulletin;
 import fi.fmi.avi.model.bulletin.immutable.GenericMeteorologicalBulletinImpl;
 
 public abstract class AbstractGenericBulletinIWXXMParser<T> extends IWXXMConverterBase
-        implements AviMessageSpecificConverter<T, GenericMeteorologicalBulletin> {
+        implements IWXXMBatchConverter<T, GenericMeteorologicalBulletin> {
+
+    private Executor memberExecutor;
+
+    /**
+     * Sets the executor for parsing the bulletin messages in parallel. The messages are included in the bulletin
+     * in document order.
+     *
+     * The calling thread parses the messages not yet started by the executor instead of waiting for them, so the
+     * executor may be the same bounded pool the bulletins are parsed on, for example with
+     * {@link #convertBatch(java.util.List, ConversionHints, Executor)}. A separate executor still gives better
+     * parallelism in that case, as the messages then do not compete with the bulletins for the threads.
+     *
+     * @param executor
+     *         the executor to parse the messages on, or null (the default) to parse them in the calling thread
+     */
+    public void setMemberExecutor(final Executor executor) {
+        this.memberExecutor = executor;
+    }
 
     @Override
     public ConversionResult<GenericMeteorologicalBulletin> convertMessage(final T input, final ConversionHints hints) {
         final ConversionResult<GenericMeteorologicalBulletin> retval = new ConversionResult<>();
         try {
             final Document doc = parseAsDom(input);
+            final Object validationLevel = getValidationLevel(hints, IWXXMConversionHints.VALUE_VALIDATION_LEVEL_NONE);
+            if (includesSchemaValidation(validationLevel)) {
+                final IssueList schemaIssues = validateAgainstSchema(doc);
+                if (!schemaIssues.isEmpty()) {
+                    retval.addIssue(schemaIssues);
+                    return retval;
+                }
+            }
+            if (includesSchematronValidation(validationLevel)) {
+                final Element root = doc.getDocumentElement();
+                retval.addIssue(AbstractJAXBIWXXMParser.validateAgainstIWXXMSchematron(new DOMSource(doc), new QName(root.getNamespaceURI(), root.getLocalName()),
+                        hints));
+            }
             final BulletinProperties properties = new BulletinProperties();
-            retval.addIssue(IWXXMGenericBulletinScanner.collectBulletinProperties(doc, properties, hints));
+            retval.addIssue(IWXXMGenericBulletinScanner.collectBulletinProperties(doc, properties, hints, this.memberExecutor));
 
             //Heading
             if (!properties.contains(BulletinProperties.Name.HEADING)) {
@@ -96,4 +141,31 @@ public abstract class AbstractGenericBulletinIWXXMParser<T> extends IWXXMConvert
     }
 
     protected abstract Document parseAsDom(T input) throws ConversionException;
+
+    private static IssueList validateAgainstSchema(final Document doc) {
+        final IssueList retval = new IssueList();
+        try {
+            final Validator validator = IWXXMSchemaRegistry.getSchema(IWXXMSchemaRegistry.SchemaSet.IWXXM_WITH_COLLECT).newValidator();
+            validator.setErrorHandler(new ErrorHandler() {
+                @Override
+                public void warning(final SAXParseException exception) {
+                    //NOOP
+                }
+
+                @Override
+                public void error(final SAXParseException exception) {
+                    retval.add(new ConversionIssue(ConversionIssue.Type.SYNTAX, "XML Schema validation issue: " + exception.getMessage(), exception));
+                }
+
+                @Override
+                public void fatalError(final SAXParseException exception) {
+                    error(exception);
+                }
+            });
+            validator.validate(new DOMSource(doc));
+        } catch (final SAXException | IOException e) {
+            throw new RuntimeException("Error in validating bulletin", e);
+        }
+        return retval;
+    }
 }
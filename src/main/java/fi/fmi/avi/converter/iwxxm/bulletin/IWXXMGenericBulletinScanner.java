@@ -3,21 +3,22 @@ package fi.fmi.avi.converter.iwxxm.bulletin;
 import java.io.StringWriter;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -25,8 +26,10 @@ import org.w3c.dom.NodeList;
 
 import fi.fmi.avi.converter.ConversionHints;
 import fi.fmi.avi.converter.ConversionIssue;
+import fi.fmi.avi.converter.ConversionResult;
 import fi.fmi.avi.converter.IssueList;
 import fi.fmi.avi.converter.iwxxm.AbstractIWXXMScanner;
+import fi.fmi.avi.converter.iwxxm.IWXXMBatchContext;
 import fi.fmi.avi.converter.iwxxm.IWXXMNamespaceContext;
 import fi.fmi.avi.model.Aerodrome;
 import fi.fmi.avi.model.GenericAviationWeatherMessage;
@@ -41,10 +44,30 @@ public class IWXXMGenericBulletinScanner extends AbstractIWXXMScanner {
 
     public static List<ConversionIssue> collectBulletinProperties(final Document input,
             final BulletinProperties properties, final ConversionHints hints) {
+        return collectBulletinProperties(input, properties, hints, null);
+    }
+
+    /**
+     * Collects the bulletin heading and the contained messages of the bulletin. The contained messages may be parsed
+     * in parallel on the given executor, each task with its own XPath evaluator and transformer. The messages are
+     * added to the properties in document order regardless of the executor.
+     *
+     * @param input
+     *         the bulletin document
+     * @param properties
+     *         the properties to collect into
+     * @param hints
+     *         the conversion hints
+     * @param executor
+     *         the executor to parse the messages on, or null to parse them in the calling thread
+     *
+     * @return the issues found
+     */
+    public static List<ConversionIssue> collectBulletinProperties(final Document input, final BulletinProperties properties, final ConversionHints hints,
+            final Executor executor) {
         final IssueList retval = new IssueList();
 
-        final XPathFactory factory = XPathFactory.newInstance();
-        final XPath xpath = factory.newXPath();
+        final XPath xpath = IWXXMBatchContext.xpath();
         xpath.setNamespaceContext(new IWXXMNamespaceContext());
         try {
             XPathExpression expr = xpath.compile("/collect:MeteorologicalBulletin/collect:bulletinIdentifier");
@@ -58,15 +81,31 @@ public class IWXXMGenericBulletinScanner extends AbstractIWXXMScanner {
 
             expr = xpath.compile("/collect:MeteorologicalBulletin/collect:meteorologicalInformation/*");
             final NodeList features = (NodeList) expr.evaluate(input.getDocumentElement(), XPathConstants.NODESET);
+            final List<Element> featureElements = new ArrayList<>(features.getLength());
             for (int i = 0; i < features.getLength(); i++) {
-                collectGenericAviationWeatherMessage((Element) features.item(i), xpath, properties);
+                featureElements.add((Element) features.item(i));
+            }
+            if (executor != null && featureElements.size() > 1) {
+                //DOM implementations are not thread-safe even for reading, so each message is parsed from a copy of its own:
+                for (int i = 0; i < featureElements.size(); i++) {
+                    featureElements.set(i, copyToNewDocument(featureElements.get(i)));
+                }
+            }
+            for (final ConversionResult<GenericAviationWeatherMessage> message : IWXXMBatchContext.convertBatch(
+                    IWXXMGenericBulletinScanner::collectGenericAviationWeatherMessage, featureElements, hints, executor)) {
+                message.getConvertedMessage().ifPresent(msg -> properties.addToList(BulletinProperties.Name.MESSAGE, msg));
             }
-        } catch (final XPathExpressionException xee) {
-            retval.add(ConversionIssue.Severity.ERROR, ConversionIssue.Type.OTHER, "Unexpected error in parsing MeteorologicalBulletin", xee);
+        } catch (final XPathExpressionException | ParserConfigurationException e) {
+            retval.add(ConversionIssue.Severity.ERROR, ConversionIssue.Type.OTHER, "Unexpected error in parsing MeteorologicalBulletin", e);
         }
         return retval;
     }
 
+    private static Element copyToNewDocument(final Element element) throws ParserConfigurationException {
+        final Document document = IWXXMBatchContext.documentBuilder().newDocument();
+        return (Element) document.appendChild(document.importNode(element, true));
+    }
+
     private static IssueList collectHeading(final String bulletinIdentifier, final BulletinProperties properties) {
         final IssueList retval = new IssueList();
         try {
@@ -84,8 +123,12 @@ public class IWXXMGenericBulletinScanner extends AbstractIWXXMScanner {
         return retval;
     }
 
-    private static IssueList collectGenericAviationWeatherMessage(final Element featureElement, final XPath xpath, final BulletinProperties properties) {
+    private static ConversionResult<GenericAviationWeatherMessage> collectGenericAviationWeatherMessage(final Element featureElement,
+            final ConversionHints hints) {
+        final ConversionResult<GenericAviationWeatherMessage> result = new ConversionResult<>();
         final IssueList retval = new IssueList();
+        final XPath xpath = IWXXMBatchContext.xpath();
+        xpath.setNamespaceContext(new IWXXMNamespaceContext());
         final GenericAviationWeatherMessageImpl.Builder builder = new GenericAviationWeatherMessageImpl.Builder();
         builder.setMessageFormat(GenericAviationWeatherMessage.Format.IWXXM);
         builder.setTranslated(true);
@@ -134,8 +177,7 @@ public class IWXXMGenericBulletinScanner extends AbstractIWXXMScanner {
             try {
                 final StringWriter sw = new StringWriter();
                 final Result output = new StreamResult(sw);
-                final TransformerFactory tFactory = TransformerFactory.newInstance();
-                final Transformer transformer = tFactory.newTransformer();
+                final Transformer transformer = IWXXMBatchContext.identityTransformer();
 
                 transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
                 transformer.setOutputProperty(OutputKeys.INDENT, "yes");
@@ -150,8 +192,9 @@ public class IWXXMGenericBulletinScanner extends AbstractIWXXMScanner {
         } catch (final XPathExpressionException xpee) {
             retval.add(ConversionIssue.Severity.ERROR, ConversionIssue.Type.OTHER, "Error in parsing content as a GenericAviationWeatherMessage", xpee);
         }
-        properties.addToList(BulletinProperties.Name.MESSAGE, builder.build());
-        return retval;
+        result.addIssue(retval);
+        result.setConvertedMessage(builder.build());
+        return result;
     }
 
     private static IssueList collectSIGMETMessage(final Element featureElement, final XPath xpath, final GenericAviationWeatherMessageImpl.Builder builder)
@@ -17,4 +17,10 @@ public class TAFBulletinIWXXMDOMSerializer extends AbstractTAFBulletinIWXXMSeria
         return this.renderXMLDocument(bulletin, hints);
     }
 
+    @Override
+    protected Document render(final MeteorologicalBulletinType bulletin, final ConversionHints hints, final ConverterValidationEventHandler eventHandler)
+            throws ConversionException {
+        return this.renderXMLDocument(bulletin, MeteorologicalBulletinType.class, hints, eventHandler);
+    }
+
 }
@@ -1,7 +1,5 @@
 package fi.fmi.avi.converter.iwxxm.bulletin;
 
-import org.w3c.dom.Document;
-
 import fi.fmi.avi.converter.ConversionException;
 import fi.fmi.avi.converter.ConversionHints;
 import wmo.collect2014.MeteorologicalBulletinType;
@@ -13,8 +11,13 @@ public class TAFBulletinIWXXMStringSerializer extends AbstractTAFBulletinIWXXMSe
 
     @Override
     protected String render(final MeteorologicalBulletinType bulletin, final ConversionHints hints) throws ConversionException {
-        final Document result = renderXMLDocument(bulletin, hints);
-        return renderDOMToString(result, hints);
+        return renderXMLString(bulletin, hints);
+    }
+
+    @Override
+    protected String render(final MeteorologicalBulletinType bulletin, final ConversionHints hints, final ConverterValidationEventHandler eventHandler)
+            throws ConversionException {
+        return renderXMLString(bulletin, MeteorologicalBulletinType.class, hints, eventHandler);
     }
 
 }
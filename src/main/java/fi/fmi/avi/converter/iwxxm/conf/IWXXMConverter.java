@@ -1,16 +1,22 @@
 package fi.fmi.avi.converter.iwxxm.conf;
 
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.function.Supplier;
+
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.w3c.dom.Document;
 
 import fi.fmi.avi.converter.AviMessageSpecificConverter;
 import fi.fmi.avi.converter.ConversionSpecification;
+import fi.fmi.avi.converter.iwxxm.IWXXMWarmUp;
 import fi.fmi.avi.converter.iwxxm.bulletin.GenericBulletinIWXXMDOMParser;
 import fi.fmi.avi.converter.iwxxm.bulletin.GenericBulletinIWXXMStringParser;
 import fi.fmi.avi.converter.iwxxm.bulletin.TAFBulletinIWXXMDOMSerializer;
 import fi.fmi.avi.converter.iwxxm.bulletin.TAFBulletinIWXXMStringSerializer;
 import fi.fmi.avi.converter.iwxxm.metar.METARIWXXMDOMParser;
+import fi.fmi.avi.converter.iwxxm.metar.METARIWXXMStreamParser;
 import fi.fmi.avi.converter.iwxxm.metar.METARIWXXMStringParser;
 import fi.fmi.avi.converter.iwxxm.metar.SPECIIWXXMDOMParser;
 import fi.fmi.avi.converter.iwxxm.metar.SPECIIWXXMStringParser;
@@ -23,6 +29,7 @@ import fi.fmi.avi.converter.iwxxm.sigmet.SIGMETIWXXMStringSerializer;
 import fi.fmi.avi.converter.iwxxm.taf.TAFIWXXMDOMParser;
 import fi.fmi.avi.converter.iwxxm.taf.TAFIWXXMDOMSerializer;
 import fi.fmi.avi.converter.iwxxm.taf.TAFIWXXMJAXBSerializer;
+import fi.fmi.avi.converter.iwxxm.taf.TAFIWXXMStreamParser;
 import fi.fmi.avi.converter.iwxxm.taf.TAFIWXXMStringParser;
 import fi.fmi.avi.converter.iwxxm.taf.TAFIWXXMStringSerializer;
 import fi.fmi.avi.model.bulletin.GenericMeteorologicalBulletin;
@@ -30,6 +37,8 @@ import fi.fmi.avi.model.metar.METAR;
 import fi.fmi.avi.model.metar.SPECI;
 import fi.fmi.avi.model.sigmet.AIRMET;
 import fi.fmi.avi.model.sigmet.SIGMET;
+import fi.fmi.avi.model.sigmet.immutable.AIRMETImpl;
+import fi.fmi.avi.model.sigmet.immutable.SIGMETImpl;
 import fi.fmi.avi.model.taf.TAF;
 import fi.fmi.avi.model.taf.TAFBulletin;
 import icao.iwxxm21.TAFType;
@@ -69,6 +78,24 @@ public class IWXXMConverter {
     public static final ConversionSpecification<Document,TAF> IWXXM21_DOM_TO_TAF_POJO = new ConversionSpecification<>(Document.class,TAF.class,
             "TAF, XML/IWXXM 2.1", null);
 
+    /**
+     * Pre-configured spec for IWXXM 2.1 XML format TAF document byte stream to {@link TAF}, parsed without an intermediate DOM.
+     */
+    public static final ConversionSpecification<InputStream, TAF> IWXXM21_INPUT_STREAM_TO_TAF_POJO = new ConversionSpecification<>(InputStream.class, TAF.class,
+            "TAF, XML/IWXXM 2.1", null);
+
+    /**
+     * Pre-configured spec for IWXXM 2.1 XML format TAF document byte array to {@link TAF}, parsed without an intermediate DOM.
+     */
+    public static final ConversionSpecification<byte[], TAF> IWXXM21_BYTES_TO_TAF_POJO = new ConversionSpecification<>(byte[].class, TAF.class,
+            "TAF, XML/IWXXM 2.1", null);
+
+    /**
+     * Pre-configured spec for IWXXM 2.1 XML format TAF document character stream to {@link TAF}, parsed without an intermediate DOM.
+     */
+    public static final ConversionSpecification<Reader, TAF> IWXXM21_READER_TO_TAF_POJO = new ConversionSpecification<>(Reader.class, TAF.class,
+            "TAF, XML/IWXXM 2.1", null);
+
     /**
      * Pre-configured spec for IWXXM 2.1 XML format METAR document String to {@link METAR}.
      */
@@ -81,6 +108,24 @@ public class IWXXMConverter {
     public static final ConversionSpecification<Document, METAR> IWXXM21_DOM_TO_METAR_POJO = new ConversionSpecification<>(Document.class, METAR.class,
             "METAR, XML/IWXXM 2.1", null);
 
+    /**
+     * Pre-configured spec for IWXXM 2.1 XML format METAR document byte stream to {@link METAR}, parsed without an intermediate DOM.
+     */
+    public static final ConversionSpecification<InputStream, METAR> IWXXM21_INPUT_STREAM_TO_METAR_POJO = new ConversionSpecification<>(InputStream.class, METAR.class,
+            "METAR, XML/IWXXM 2.1", null);
+
+    /**
+     * Pre-configured spec for IWXXM 2.1 XML format METAR document byte array to {@link METAR}, parsed without an intermediate DOM.
+     */
+    public static final ConversionSpecification<byte[], METAR> IWXXM21_BYTES_TO_METAR_POJO = new ConversionSpecification<>(byte[].class, METAR.class,
+            "METAR, XML/IWXXM 2.1", null);
+
+    /**
+     * Pre-configured spec for IWXXM 2.1 XML format METAR document character stream to {@link METAR}, parsed without an intermediate DOM.
+     */
+    public static final ConversionSpecification<Reader, METAR> IWXXM21_READER_TO_METAR_POJO = new ConversionSpecification<>(Reader.class, METAR.class,
+            "METAR, XML/IWXXM 2.1", null);
+
     /**
      * Pre-configured spec for IWXXM 2.1 XML format SPECI document String to {@link SPECI}.
      */
@@ -176,6 +221,21 @@ public class IWXXMConverter {
         return new TAFIWXXMDOMParser();
     }
 
+    @Bean
+    public AviMessageSpecificConverter<InputStream, TAF> tafIWXXMInputStreamParser() {
+        return new TAFIWXXMStreamParser.FromInputStream();
+    }
+
+    @Bean
+    public AviMessageSpecificConverter<byte[], TAF> tafIWXXMBytesParser() {
+        return new TAFIWXXMStreamParser.FromBytes();
+    }
+
+    @Bean
+    public AviMessageSpecificConverter<Reader, TAF> tafIWXXMReaderParser() {
+        return new TAFIWXXMStreamParser.FromReader();
+    }
+
     @Bean
     public AviMessageSpecificConverter<String, METAR> metarIWXXMStringParser() {
         return new METARIWXXMStringParser();
@@ -191,6 +251,21 @@ public class IWXXMConverter {
         return new METARIWXXMDOMParser();
     }
 
+    @Bean
+    public AviMessageSpecificConverter<InputStream, METAR> metarIWXXMInputStreamParser() {
+        return new METARIWXXMStreamParser.FromInputStream();
+    }
+
+    @Bean
+    public AviMessageSpecificConverter<byte[], METAR> metarIWXXMBytesParser() {
+        return new METARIWXXMStreamParser.FromBytes();
+    }
+
+    @Bean
+    public AviMessageSpecificConverter<Reader, METAR> metarIWXXMReaderParser() {
+        return new METARIWXXMStreamParser.FromReader();
+    }
+
     @Bean
     public AviMessageSpecificConverter<String, SPECI> speciIWXXMStringParser() {
         return new SPECIIWXXMStringParser();
@@ -251,4 +326,49 @@ public class IWXXMConverter {
         return new AIRMETIWXXMStringSerializer();
     }
 
+    /**
+     * Warm-up for all the converters configured here. Not run automatically, call {@link IWXXMWarmUp#warmUp()}
+     * at application start to initialize the converters before the first real messages.
+     *
+     * The serializers are warmed up with messages parsed from the bundled samples, or read from JSON for the message
+     * types without a parser. The bulletin and SIGMET parsers are warmed up with the serialized messages.
+     *
+     * @return the warm-up
+     */
+    @Bean
+    public IWXXMWarmUp iwxxmWarmUp() {
+        final Supplier<TAF> taf = IWXXMWarmUp.converted(tafIWXXMDOMParser(), IWXXMWarmUp.sample("taf.xml", Document.class));
+        final Supplier<TAFBulletin> tafBulletin = IWXXMWarmUp.tafBulletin(taf);
+        final Supplier<SIGMET> sigmet = IWXXMWarmUp.jsonSample("sigmet.json", SIGMETImpl.class, message -> message);
+        final Supplier<AIRMET> airmet = IWXXMWarmUp.jsonSample("airmet.json", AIRMETImpl.Builder.class, AIRMETImpl.Builder::build);
+        return new IWXXMWarmUp()
+                .addConversion("TAF DOM serializer", tafIWXXMDOMSerializer(), taf)
+                .addConversion("TAF String serializer", tafIWXXMStringSerializer(), taf)
+                .addConversion("TAF JAXB serializer", tafIWXXMJAXBSerializer(), taf)
+                .addConversion("TAF String parser", tafIWXXMStringParser(), IWXXMWarmUp.sample("taf.xml", String.class))
+                .addConversion("TAF DOM parser", tafIWXXMDOMParser(), IWXXMWarmUp.sample("taf.xml", Document.class))
+                .addConversion("TAF InputStream parser", tafIWXXMInputStreamParser(), IWXXMWarmUp.sample("taf.xml", InputStream.class))
+                .addConversion("TAF byte array parser", tafIWXXMBytesParser(), IWXXMWarmUp.sample("taf.xml", byte[].class))
+                .addConversion("TAF Reader parser", tafIWXXMReaderParser(), IWXXMWarmUp.sample("taf.xml", Reader.class))
+                .addConversion("METAR String parser", metarIWXXMStringParser(), IWXXMWarmUp.sample("metar.xml", String.class))
+                .addConversion("METAR DOM parser", metarIWXXMDOMParser(), IWXXMWarmUp.sample("metar.xml", Document.class))
+                .addConversion("METAR InputStream parser", metarIWXXMInputStreamParser(), IWXXMWarmUp.sample("metar.xml", InputStream.class))
+                .addConversion("METAR byte array parser", metarIWXXMBytesParser(), IWXXMWarmUp.sample("metar.xml", byte[].class))
+                .addConversion("METAR Reader parser", metarIWXXMReaderParser(), IWXXMWarmUp.sample("metar.xml", Reader.class))
+                .addConversion("SPECI String parser", speciIWXXMStringParser(), IWXXMWarmUp.sample("speci.xml", String.class))
+                .addConversion("SPECI DOM parser", speciIWXXMDOMParser(), IWXXMWarmUp.sample("speci.xml", Document.class))
+                .addConversion("TAF bulletin DOM serializer", tafBulletinIWXXMDOMSerializer(), tafBulletin)
+                .addConversion("TAF bulletin String serializer", tafBulletinIWXXMStringSerializer(), tafBulletin)
+                .addConversion("Generic bulletin DOM parser", genericBulletinIWXXMDOMParser(),
+                        IWXXMWarmUp.converted(tafBulletinIWXXMDOMSerializer(), tafBulletin))
+                .addConversion("Generic bulletin String parser", genericBulletinIWXXMStringParser(),
+                        IWXXMWarmUp.converted(tafBulletinIWXXMStringSerializer(), tafBulletin))
+                .addConversion("SIGMET DOM serializer", sigmetIWXXMDOMSerializer(), sigmet)
+                .addConversion("SIGMET String serializer", sigmetIWXXMStringSerializer(), sigmet)
+                .addConversion("SIGMET String parser", sigmetIWXXMStringParser(), IWXXMWarmUp.converted(sigmetIWXXMStringSerializer(), sigmet))
+                .addConversion("SIGMET DOM parser", sigmetIWXXMDOMParser(), IWXXMWarmUp.converted(sigmetIWXXMDOMSerializer(), sigmet))
+                .addConversion("AIRMET DOM serializer", airmetIWXXMDOMSerializer(), airmet)
+                .addConversion("AIRMET String serializer", airmetIWXXMStringSerializer(), airmet);
+    }
+
 }
@@ -5,14 +5,12 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
-import javax.xml.XMLConstants;
 import javax.xml.bind.Binder;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.ValidationEvent;
 import javax.xml.bind.ValidationEventHandler;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -23,7 +21,7 @@ import fi.fmi.avi.converter.ConversionHints;
 import fi.fmi.avi.converter.ConversionIssue;
 import fi.fmi.avi.converter.ConversionResult;
 import fi.fmi.avi.converter.iwxxm.AbstractJAXBIWXXMParser;
-import fi.fmi.avi.converter.iwxxm.IWXXMSchemaResourceResolver;
+import fi.fmi.avi.converter.iwxxm.IWXXMSchemaRegistry;
 import fi.fmi.avi.converter.iwxxm.ReferredObjectRetrievalContext;
 import fi.fmi.avi.model.AviationCodeListUser;
 import fi.fmi.avi.model.PartialOrCompleteTimeInstant;
@@ -90,12 +88,7 @@ public abstract class AbstractSIGMETIWXXMParser<T> extends AbstractJAXBIWXXMPars
 
         try {
             Document dom = parseAsDom(input);
-            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            IWXXMSchemaResourceResolver resolver = IWXXMSchemaResourceResolver.getInstance();
-            schemaFactory.setResourceResolver(resolver);
-            //Secure processing does not allow "file" protocol loading for schemas:
-            schemaFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, false);
-            Schema iwxxmSchema = schemaFactory.newSchema(SIGMETType.class.getResource("/int/icao/iwxxm/2.1.1/iwxxm.xsd"));
+            Schema iwxxmSchema = IWXXMSchemaRegistry.getSchema(IWXXMSchemaRegistry.SchemaSet.IWXXM);
 
             Binder<Node> binder = getJAXBContext().createBinder();
 
@@ -2,16 +2,19 @@ package fi.fmi.avi.converter.iwxxm.sigmet;
 
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.net.URL;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
 import javax.xml.bind.JAXBElement;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
+import javax.xml.namespace.QName;
 
 import net.opengis.gml32.AbstractRingPropertyType;
 import net.opengis.gml32.AbstractTimeObjectType;
@@ -66,13 +69,15 @@ import aero.aixm511.UnitTimeSlicePropertyType;
 import aero.aixm511.UnitTimeSliceType;
 import aero.aixm511.UnitType;
 import aero.aixm511.ValDistanceVerticalType;
-import fi.fmi.avi.converter.AviMessageSpecificConverter;
 import fi.fmi.avi.converter.ConversionException;
 import fi.fmi.avi.converter.ConversionHints;
 import fi.fmi.avi.converter.ConversionIssue;
 import fi.fmi.avi.converter.ConversionResult;
 import fi.fmi.avi.converter.ConversionResult.Status;
 import fi.fmi.avi.converter.iwxxm.AbstractIWXXMSerializer;
+import fi.fmi.avi.converter.iwxxm.IWXXMBatchConverter;
+import fi.fmi.avi.converter.iwxxm.IWXXMCleanupFilter;
+import fi.fmi.avi.converter.iwxxm.IWXXMNamespaceContext;
 import fi.fmi.avi.model.AviationCodeListUser;
 import fi.fmi.avi.model.Geometry;
 import fi.fmi.avi.model.NumericMeasure;
@@ -112,11 +117,38 @@ import wmo.metce2013.ProcessType;
 import wmo.metce2013.VolcanoPropertyType;
 import wmo.metce2013.VolcanoType;
 
-public abstract class AbstractSIGMETIWXXMSerializer<T> extends AbstractIWXXMSerializer implements AviMessageSpecificConverter<SIGMET, T> {
+public abstract class AbstractSIGMETIWXXMSerializer<T> extends AbstractIWXXMSerializer implements IWXXMBatchConverter<SIGMET, T> {
     private static final Logger LOG = LoggerFactory.getLogger(AbstractSIGMETIWXXMSerializer.class);
 
     protected abstract T render(final SIGMETType sigmet, final ConversionHints hints) throws ConversionException;
 
+    /**
+     * Validates the SIGMET against the XML Schema and renders it. By default the validation is done
+     * as a separate pass before rendering, serializers producing XML output override this to validate while rendering.
+     *
+     * @param sigmet
+     *         the SIGMET to render
+     * @param validationClass
+     *         the JAXB type to validate the SIGMET as
+     * @param hints
+     *         conversion hints
+     * @param eventHandler
+     *         the handler collecting the validation issues
+     *
+     * @return the rendered SIGMET, or null if the validation failed
+     *
+     * @throws ConversionException
+     *         if the SIGMET cannot be rendered
+     */
+    protected <S extends SIGMETType> T render(final S sigmet, final Class<S> validationClass, final ConversionHints hints,
+            final ConverterValidationEventHandler eventHandler) throws ConversionException {
+        this.validateDocument(sigmet, validationClass, hints, eventHandler);
+        if (eventHandler.errorsFound()) {
+            return null;
+        }
+        return this.render(sigmet, hints);
+    }
+
     /**
      * Converts a TAF object into another format.
      *
@@ -315,12 +347,11 @@ public abstract class AbstractSIGMETIWXXMSerializer<T> extends AbstractIWXXMSeri
         this.updateMessageMetadata(input, result, sigmet);
 
         ConverterValidationEventHandler eventHandler = new ConverterValidationEventHandler(result);
+        final T rendered;
         if (input.getSigmetPhenomenon().equals(AviationCodeListUser.AeronauticalSignificantWeatherPhenomenon.VA)) {
-            this.validateDocument(((VolcanicAshSIGMETType) sigmet), VolcanicAshSIGMETType.class, hints, eventHandler); //TODO true is for debugging: shows
-            // results even in
-            // case of failure
+            rendered = this.render(((VolcanicAshSIGMETType) sigmet), VolcanicAshSIGMETType.class, hints, eventHandler);
         } else {
-            this.validateDocument(sigmet, SIGMETType.class, hints, eventHandler); //TODO true is for debugging: shows results even in case of failure
+            rendered = this.render(sigmet, SIGMETType.class, hints, eventHandler);
         }
 
         if (eventHandler.errorsFound()) {
@@ -329,7 +360,7 @@ public abstract class AbstractSIGMETIWXXMSerializer<T> extends AbstractIWXXMSeri
                 System.err.println("ISS: " + iss.getMessage());
             }
         } else {
-            result.setConvertedMessage(this.render(sigmet, hints));
+            result.setConvertedMessage(rendered);
         }
     } catch (ConversionException e) {
             result.setStatus(Status.FAIL);
@@ -953,4 +984,26 @@ public abstract class AbstractSIGMETIWXXMSerializer<T> extends AbstractIWXXMSeri
         }
         return retval;
     }
+
+    @Override
+    protected URL getCleanupTransformationStylesheetLocation(ConversionHints hints) throws ConversionException {
+        URL retval = this.getClass().getResource("SIGMETCleanup.xsl");
+        if (retval == null) {
+            throw new ConversionException("Error accessing cleanup XSLT sheet file");
+        }
+        return retval;
+    }
+
+    @Override
+    protected IWXXMCleanupFilter createCleanupFilter(final ConversionHints hints) {
+        //Same rules as in SIGMETCleanup.xsl:
+        return new IWXXMCleanupFilter(Arrays.asList(new QName(IWXXMNamespaceContext.getURI("gml"), "boundedBy"),
+                new QName(IWXXMNamespaceContext.getURI("aixm"), "upperLimit"),
+                new QName(IWXXMNamespaceContext.getURI("aixm"), "upperLimitReference"),
+                new QName(IWXXMNamespaceContext.getURI("aixm"), "lowerLimit"),
+                new QName(IWXXMNamespaceContext.getURI("aixm"), "lowerLimitReference"),
+                new QName(IWXXMNamespaceContext.getURI("aixm"), "designatorICAO"),
+                new QName(IWXXMNamespaceContext.getURI("aixm"), "horizontalAccuracy")),
+                Collections.singletonList(new QName(IWXXMNamespaceContext.getURI("iwxxm"), "SIGMETEvolvingCondition")));
+    }
 }
@@ -12,4 +12,10 @@ public class SIGMETIWXXMDOMSerializer  extends AbstractSIGMETIWXXMSerializer<Doc
     protected Document render(final SIGMETType sigmet, final ConversionHints hints) throws ConversionException {
         return renderXMLDocument(sigmet, hints);
     }
+
+    @Override
+    protected <S extends SIGMETType> Document render(final S sigmet, final Class<S> validationClass, final ConversionHints hints,
+            final ConverterValidationEventHandler eventHandler) throws ConversionException {
+        return renderXMLDocument(sigmet, validationClass, hints, eventHandler);
+    }
 }
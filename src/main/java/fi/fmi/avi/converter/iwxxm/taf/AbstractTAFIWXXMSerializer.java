@@ -3,6 +3,7 @@ package fi.fmi.avi.converter.iwxxm.taf;
 import static fi.fmi.avi.model.AviationCodeListUser.CODELIST_VALUE_NIL_REASON_NOTHING_OF_OPERATIONAL_SIGNIFICANCE;
 
 import java.io.InputStream;
+import java.net.URL;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -31,7 +32,6 @@ import net.opengis.om20.OMProcessPropertyType;
 import net.opengis.om20.TimeObjectPropertyType;
 
 import aero.aixm511.AirportHeliportType;
-import fi.fmi.avi.converter.AviMessageSpecificConverter;
 import fi.fmi.avi.converter.ConversionException;
 import fi.fmi.avi.converter.ConversionHints;
 import fi.fmi.avi.converter.ConversionIssue;
@@ -39,6 +39,7 @@ import fi.fmi.avi.converter.ConversionIssue.Type;
 import fi.fmi.avi.converter.ConversionResult;
 import fi.fmi.avi.converter.ConversionResult.Status;
 import fi.fmi.avi.converter.iwxxm.AbstractIWXXMSerializer;
+import fi.fmi.avi.converter.iwxxm.IWXXMBatchConverter;
 import fi.fmi.avi.model.Aerodrome;
 import fi.fmi.avi.model.AviationCodeListUser;
 import fi.fmi.avi.model.AviationCodeListUser.TAFStatus;
@@ -78,10 +79,34 @@ import wmo.metce2013.ProcessType;
  * @param <T>
  *         the type of the
  */
-public abstract class AbstractTAFIWXXMSerializer<T> extends AbstractIWXXMSerializer implements AviMessageSpecificConverter<TAF, T> {
+public abstract class AbstractTAFIWXXMSerializer<T> extends AbstractIWXXMSerializer implements IWXXMBatchConverter<TAF, T> {
 
     protected abstract T render(TAFType taf, ConversionHints hints) throws ConversionException;
 
+    /**
+     * Validates the TAF against the XML Schema and renders it. By default the validation is done
+     * as a separate pass before rendering, serializers producing XML output override this to validate while rendering.
+     *
+     * @param taf
+     *         the TAF to render
+     * @param hints
+     *         conversion hints
+     * @param eventHandler
+     *         the handler collecting the validation issues
+     *
+     * @return the rendered TAF, or null if the validation failed
+     *
+     * @throws ConversionException
+     *         if the TAF cannot be rendered
+     */
+    protected T render(final TAFType taf, final ConversionHints hints, final ConverterValidationEventHandler eventHandler) throws ConversionException {
+        validateDocument(taf, TAFType.class, hints, eventHandler);
+        if (eventHandler.errorsFound()) {
+            return null;
+        }
+        return this.render(taf, hints);
+    }
+
     /**
      * Converts a TAF object into another format.
      *
@@ -170,11 +195,11 @@ public abstract class AbstractTAFIWXXMSerializer<T> extends AbstractIWXXMSeriali
         try {
             this.updateMessageMetadata(input, result, taf);
             final ConverterValidationEventHandler eventHandler = new ConverterValidationEventHandler(result);
-            validateDocument(taf, TAFType.class, hints, eventHandler);
+            final T rendered = this.render(taf, hints, eventHandler);
             if (eventHandler.errorsFound()) {
                 result.setStatus(Status.FAIL);
             } else {
-                result.setConvertedMessage(this.render(taf, hints));
+                result.setConvertedMessage(rendered);
             }
         } catch (final ConversionException e) {
             result.setStatus(Status.FAIL);
@@ -553,4 +578,13 @@ public abstract class AbstractTAFIWXXMSerializer<T> extends AbstractIWXXMSeriali
         return retval;
     }
 
+    @Override
+    protected URL getCleanupTransformationStylesheetLocation(final ConversionHints hints) throws ConversionException {
+        final URL retval = this.getClass().getResource("TAFCleanup.xsl");
+        if (retval == null) {
+            throw new ConversionException("Error accessing cleanup XSLT sheet file");
+        }
+        return retval;
+    }
+
 }
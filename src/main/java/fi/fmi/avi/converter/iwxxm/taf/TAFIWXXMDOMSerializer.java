@@ -16,4 +16,9 @@ public class TAFIWXXMDOMSerializer extends AbstractTAFIWXXMSerializer<Document>
         return this.renderXMLDocument(taf, hints);
     }
 
+    @Override
+    protected Document render(final TAFType taf, final ConversionHints hints, final ConverterValidationEventHandler eventHandler) throws ConversionException {
+        return this.renderXMLDocument(taf, TAFType.class, hints, eventHandler);
+    }
+
 }
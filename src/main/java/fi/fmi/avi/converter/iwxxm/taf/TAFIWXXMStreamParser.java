@@ -0,0 +1,69 @@
+package fi.fmi.avi.converter.iwxxm.taf;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.function.Supplier;
+
+import javax.xml.transform.stream.StreamSource;
+
+import org.w3c.dom.Document;
+
+import fi.fmi.avi.converter.ConversionException;
+import fi.fmi.avi.converter.iwxxm.IWXXMConverterBase;
+
+/**
+ * Specializations of {@link AbstractTAFIWXXMParser} for streamed input. The TAF is unmarshalled
+ * directly from a XMLStreamReader with XML Schema validation, without building a DOM Document of the input.
+ *
+ * @param <T>
+ *         the type of the raw input message
+ */
+public abstract class TAFIWXXMStreamParser<T> extends AbstractTAFIWXXMParser<T> {
+
+    /**
+     * Returns the TAF input message as A DOM Document. Not used by the stream parsers unless
+     * {@link #getStreamSources(Object)} is overridden to return null.
+     *
+     * @param input
+     *         the XML Document input
+     *
+     * @return the input parsed as DOM
+     *
+     * @throws ConversionException
+     *         if an exception occurs while converting input to DOM
+     */
+    @Override
+    protected Document parseAsDom(final T input) throws ConversionException {
+        return IWXXMConverterBase.parseStreamSourceToDOM(getStreamSources(input).get());
+    }
+
+    /**
+     * Stream parser for InputStream input. The stream is not closed.
+     */
+    public static class FromInputStream extends TAFIWXXMStreamParser<InputStream> {
+        @Override
+        protected Supplier<StreamSource> getStreamSources(final InputStream input) throws ConversionException {
+            return streamSourcesOf(input);
+        }
+    }
+
+    /**
+     * Stream parser for byte array input.
+     */
+    public static class FromBytes extends TAFIWXXMStreamParser<byte[]> {
+        @Override
+        protected Supplier<StreamSource> getStreamSources(final byte[] input) {
+            return streamSourcesOf(input);
+        }
+    }
+
+    /**
+     * Stream parser for character stream input. The reader is not closed.
+     */
+    public static class FromReader extends TAFIWXXMStreamParser<Reader> {
+        @Override
+        protected Supplier<StreamSource> getStreamSources(final Reader input) throws ConversionException {
+            return streamSourcesOf(input);
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package fi.fmi.avi.converter.iwxxm.taf;
 
-import org.w3c.dom.Document;
-
 import fi.fmi.avi.converter.ConversionException;
 import fi.fmi.avi.converter.ConversionHints;
 import icao.iwxxm21.TAFType;
@@ -13,8 +11,12 @@ public class TAFIWXXMStringSerializer extends AbstractTAFIWXXMSerializer<String>
 
     @Override
     protected String render(TAFType taf, ConversionHints hints) throws ConversionException {
-        Document result = renderXMLDocument(taf, hints);
-        return renderDOMToString(result, hints);
+        return renderXMLString(taf, hints);
+    }
+
+    @Override
+    protected String render(final TAFType taf, final ConversionHints hints, final ConverterValidationEventHandler eventHandler) throws ConversionException {
+        return renderXMLString(taf, TAFType.class, hints, eventHandler);
     }
 
 }
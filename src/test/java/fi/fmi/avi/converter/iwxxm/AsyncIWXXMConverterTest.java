@@ -0,0 +1,118 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import fi.fmi.avi.converter.AviMessageConverter;
+import fi.fmi.avi.converter.ConversionResult;
+import fi.fmi.avi.converter.ConversionSpecification;
+
+public class AsyncIWXXMConverterTest {
+    private static final ConversionSpecification<String, String> UPPER_CASE = new ConversionSpecification<>(String.class, String.class, "lower case",
+            "upper case");
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    private AviMessageConverter createConverter() {
+        final AviMessageConverter retval = new AviMessageConverter();
+        retval.setMessageSpecificConverter(UPPER_CASE, (input, hints) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                if ("fail".equals(input)) {
+                    throw new IllegalStateException("failed");
+                }
+                Thread.sleep(20);
+                final ConversionResult<String> result = new ConversionResult<>();
+                result.setConvertedMessage(input.toUpperCase());
+                result.setStatus(ConversionResult.Status.SUCCESS);
+                return result;
+            } catch (final InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+        return retval;
+    }
+
+    @Test
+    public void testResultsAndBoundedConcurrency() {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final AsyncIWXXMConverter async = new AsyncIWXXMConverter(createConverter(), executor, 2);
+            final List<CompletableFuture<ConversionResult<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(async.convertMessage("message" + i, UPPER_CASE));
+                assertTrue(async.getInFlight() <= 2);
+            }
+            for (int i = 0; i < 10; i++) {
+                assertEquals("MESSAGE" + i, futures.get(i).join().getConvertedMessage().orElse(null));
+            }
+            assertTrue(maxRunning.get() <= 2);
+            assertEquals(10, async.getSubmitted());
+            assertEquals(10, async.getCompleted());
+            assertEquals(0, async.getInFlight());
+            //The later submissions waited for the earlier ones to complete:
+            assertTrue(async.getMaxQueueingTime().toMillis() >= 20);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailureCompletesExceptionally() {
+        try (AsyncIWXXMConverter async = new AsyncIWXXMConverter(createConverter(), 1)) {
+            final CompletableFuture<ConversionResult<String>> failed = async.convertMessage("fail", UPPER_CASE);
+            try {
+                failed.join();
+                fail("Expected the conversion to fail");
+            } catch (final CompletionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            assertEquals(1, async.getFailed());
+            //The permit of the failed conversion was released:
+            assertEquals("OK", async.convertMessage("ok", UPPER_CASE).join().getConvertedMessage().orElse(null));
+        }
+    }
+
+    @Test
+    public void testTryConvertMessageRejectsAtLimit() {
+        //An executor running the conversions only when asked, so that the first one stays in flight:
+        final List<Runnable> pending = new ArrayList<>();
+        final AsyncIWXXMConverter async = new AsyncIWXXMConverter(createConverter(), pending::add, 1);
+        final CompletableFuture<ConversionResult<String>> accepted = async.tryConvertMessage("accepted", UPPER_CASE);
+        final CompletableFuture<ConversionResult<String>> rejected = async.tryConvertMessage("rejected", UPPER_CASE);
+        assertTrue(rejected.isCompletedExceptionally());
+        try {
+            rejected.join();
+            fail("Expected the conversion to be rejected");
+        } catch (final CompletionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals(1, pending.size());
+        assertEquals(1, async.getRejected());
+        assertEquals(1, async.getSubmitted());
+
+        pending.remove(0).run();
+        assertEquals("ACCEPTED", accepted.join().getConvertedMessage().orElse(null));
+        //The limit is free again:
+        final CompletableFuture<ConversionResult<String>> retried = async.tryConvertMessage("retried", UPPER_CASE);
+        assertEquals(1, pending.size());
+        pending.remove(0).run();
+        assertEquals("RETRIED", retried.join().getConvertedMessage().orElse(null));
+        assertEquals(1, async.getRejected());
+    }
+}
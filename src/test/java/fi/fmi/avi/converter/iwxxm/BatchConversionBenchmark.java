@@ -0,0 +1,56 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import fi.fmi.avi.converter.ConversionHints;
+import fi.fmi.avi.converter.iwxxm.metar.METARIWXXMStringParser;
+import fi.fmi.avi.model.metar.METAR;
+
+/**
+ * Measures the batch conversion throughput. Not run with the unit tests, run with <code>mvn test -Pbenchmark</code>.
+ */
+public class BatchConversionBenchmark {
+    private static final int BATCH_SIZE = 200;
+
+    @Test
+    public void testBatchThroughput() throws Exception {
+        final IWXXMBatchConverter<String, METAR> parser = new METARIWXXMStringParser();
+        final List<String> metars = BatchConversionTest.readMETARs();
+        final List<String> inputs = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            inputs.add(metars.get(i % metars.size()));
+        }
+        //Warm up:
+        parser.convertBatch(metars, ConversionHints.EMPTY);
+
+        long start = System.nanoTime();
+        for (final String input : inputs) {
+            parser.convertMessage(input, ConversionHints.EMPTY);
+        }
+        printThroughput("single conversions", System.nanoTime() - start);
+
+        start = System.nanoTime();
+        parser.convertBatch(inputs, ConversionHints.EMPTY);
+        printThroughput("batch", System.nanoTime() - start);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            start = System.nanoTime();
+            assertEquals(BATCH_SIZE, parser.convertBatch(inputs, ConversionHints.EMPTY, executor).size());
+            printThroughput("parallel batch", System.nanoTime() - start);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void printThroughput(final String conversion, final long nanos) {
+        System.out.printf("METAR parsing, %s of %d messages: %.1f messages/s%n", conversion, BATCH_SIZE, BATCH_SIZE * 1e9 / nanos);
+    }
+}
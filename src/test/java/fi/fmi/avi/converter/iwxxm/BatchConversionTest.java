@@ -0,0 +1,86 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import fi.fmi.avi.converter.AviMessageSpecificConverter;
+import fi.fmi.avi.converter.ConversionHints;
+import fi.fmi.avi.converter.ConversionResult;
+import fi.fmi.avi.converter.iwxxm.metar.METARIWXXMStringParser;
+import fi.fmi.avi.model.metar.METAR;
+
+/**
+ * Checks that batch conversions return the same results in the same order as single conversions,
+ * also when a batch is converted within another batch on the same executor.
+ */
+public class BatchConversionTest {
+    @Test
+    public void testBatchResultsInInputOrder() throws Exception {
+        final IWXXMBatchConverter<String, METAR> parser = new METARIWXXMStringParser();
+        final List<String> inputs = readMETARs();
+        final List<ConversionResult<METAR>> expected = new ArrayList<>();
+        for (final String input : inputs) {
+            expected.add(parser.convertMessage(input, ConversionHints.EMPTY));
+        }
+        assertSameResults(expected, parser.convertBatch(inputs, ConversionHints.EMPTY));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertSameResults(expected, parser.convertBatch(inputs, ConversionHints.EMPTY, executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testNestedBatchOnSameExecutor() throws Exception {
+        final IWXXMBatchConverter<String, METAR> parser = new METARIWXXMStringParser();
+        final List<String> inputs = readMETARs();
+        final ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            //Each outer conversion waits for an inner batch on the single thread already running the outer batch:
+            final AviMessageSpecificConverter<List<String>, METAR> outer = (batch, hints) -> parser.convertBatch(batch, hints, executor).get(0);
+            final List<ConversionResult<METAR>> results = IWXXMBatchContext.convertBatch(outer, Arrays.asList(inputs, inputs, inputs),
+                    ConversionHints.EMPTY, executor);
+            assertEquals(3, results.size());
+            for (final ConversionResult<METAR> result : results) {
+                assertEquals(parser.convertMessage(inputs.get(0), ConversionHints.EMPTY).getConvertedMessage(), result.getConvertedMessage());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertSameResults(final List<ConversionResult<METAR>> expected, final List<ConversionResult<METAR>> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals("result " + i, expected.get(i).getStatus(), actual.get(i).getStatus());
+            assertEquals("result " + i, expected.get(i).getConversionIssues().size(), actual.get(i).getConversionIssues().size());
+            assertEquals("result " + i, expected.get(i).getConvertedMessage(), actual.get(i).getConvertedMessage());
+        }
+    }
+
+    static List<String> readMETARs() throws Exception {
+        final File resourceDir = new File(BatchConversionTest.class.getResource("metar-A3-1.xml").toURI()).getParentFile();
+        final File[] xmlFiles = resourceDir.listFiles((dir, name) -> name.startsWith("metar-") && name.endsWith(".xml"));
+        Arrays.sort(xmlFiles);
+        final List<String> retval = new ArrayList<>();
+        for (final File xmlFile : xmlFiles) {
+            try (InputStream is = BatchConversionTest.class.getResourceAsStream(xmlFile.getName())) {
+                retval.add(IOUtils.toString(is, StandardCharsets.UTF_8));
+            }
+        }
+        return retval;
+    }
+}
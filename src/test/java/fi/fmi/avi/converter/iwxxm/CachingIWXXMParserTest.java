@@ -0,0 +1,115 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import fi.fmi.avi.converter.AviMessageSpecificConverter;
+import fi.fmi.avi.converter.ConversionHints;
+import fi.fmi.avi.converter.ConversionIssue;
+import fi.fmi.avi.converter.ConversionResult;
+
+public class CachingIWXXMParserTest {
+
+    private final AtomicInteger conversions = new AtomicInteger();
+    private final AviMessageSpecificConverter<String, String> parser = (input, hints) -> {
+        conversions.incrementAndGet();
+        final ConversionResult<String> result = new ConversionResult<>();
+        result.addIssue(new ConversionIssue(ConversionIssue.Severity.INFO, ConversionIssue.Type.OTHER, "parsed"));
+        result.setConvertedMessage(input.trim());
+        result.setStatus(ConversionResult.Status.SUCCESS);
+        return result;
+    };
+
+    @Test
+    public void testHitsAndNormalization() {
+        final CachingIWXXMParser<String, String> cache = new CachingIWXXMParser<>(parser, 1000, Duration.ofMinutes(10));
+        final ConversionResult<String> first = cache.convertMessage("<a>\r\n<b/>\r\n</a>", ConversionHints.EMPTY);
+        final ConversionResult<String> second = cache.convertMessage("<a>\n<b/>\r</a>", ConversionHints.EMPTY);
+        assertEquals(1, conversions.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertNotSame(first, second);
+        assertEquals(first.getConvertedMessage(), second.getConvertedMessage());
+        assertEquals(ConversionResult.Status.SUCCESS, second.getStatus());
+        assertEquals(1, second.getConversionIssues().size());
+
+        //Modifying a returned result must not affect the cached one:
+        second.addIssue(new ConversionIssue(ConversionIssue.Severity.ERROR, ConversionIssue.Type.OTHER, "modified"));
+        assertEquals(1, cache.convertMessage("<a>\n<b/>\n</a>", ConversionHints.EMPTY).getConversionIssues().size());
+    }
+
+    @Test
+    public void testSignificantDifferencesAreNotNormalized() {
+        final CachingIWXXMParser<String, String> cache = new CachingIWXXMParser<>(parser, 1000, Duration.ofMinutes(10));
+        cache.convertMessage("<?xml version=\"1.0\"?><a/>", ConversionHints.EMPTY);
+        //White space before the XML declaration is a fatal error, a byte order mark in a String is content:
+        cache.convertMessage(" <?xml version=\"1.0\"?><a/>", ConversionHints.EMPTY);
+        cache.convertMessage("\uFEFF<?xml version=\"1.0\"?><a/>", ConversionHints.EMPTY);
+        cache.convertMessage("<?xml version=\"1.0\"?><a/>\n", ConversionHints.EMPTY);
+        assertEquals(4, conversions.get());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testLineEndingsOfUTF16InputAreNotNormalized() {
+        final AtomicInteger byteConversions = new AtomicInteger();
+        final CachingIWXXMParser<byte[], String> cache = new CachingIWXXMParser<>((input, hints) -> {
+            byteConversions.incrementAndGet();
+            return new ConversionResult<>();
+        }, 1000, Duration.ofMinutes(10));
+        cache.convertMessage("<a>\r\n</a>".getBytes(StandardCharsets.UTF_16), ConversionHints.EMPTY);
+        cache.convertMessage("<a>\n\n</a>".getBytes(StandardCharsets.UTF_16), ConversionHints.EMPTY);
+        assertEquals(2, byteConversions.get());
+        cache.convertMessage("<a>\r\n</a>".getBytes(StandardCharsets.UTF_8), ConversionHints.EMPTY);
+        cache.convertMessage("<a>\n</a>".getBytes(StandardCharsets.UTF_8), ConversionHints.EMPTY);
+        assertEquals(3, byteConversions.get());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testHintsArePartOfKey() {
+        final CachingIWXXMParser<String, String> cache = new CachingIWXXMParser<>(parser, 1000, Duration.ofMinutes(10));
+        cache.convertMessage("<a/>", ConversionHints.EMPTY);
+        cache.convertMessage("<a/>", null);
+        cache.convertMessage("<a/>", new ConversionHints(IWXXMConversionHints.KEY_VALIDATION_LEVEL, IWXXMConversionHints.VALUE_VALIDATION_LEVEL_NONE));
+        assertEquals(2, conversions.get());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testEvictionBySize() {
+        final CachingIWXXMParser<String, String> cache = new CachingIWXXMParser<>(parser, 10, Duration.ofMinutes(10));
+        cache.convertMessage("<aaaa/>", ConversionHints.EMPTY);
+        cache.convertMessage("<bbbb/>", ConversionHints.EMPTY);
+        assertEquals(1, cache.getEvictions());
+        assertEquals(1, cache.getSize());
+        assertEquals(7, cache.getWeight());
+        cache.convertMessage("<bbbb/>", ConversionHints.EMPTY);
+        assertEquals(1, cache.getHits());
+        cache.convertMessage("<aaaa/>", ConversionHints.EMPTY);
+        assertEquals(3, conversions.get());
+    }
+
+    @Test
+    public void testExpiration() {
+        final AtomicLong clock = new AtomicLong();
+        final CachingIWXXMParser<String, String> cache = new CachingIWXXMParser<>(parser, 1000, Duration.ofSeconds(60), clock::get);
+        cache.convertMessage("<a/>", ConversionHints.EMPTY);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        cache.convertMessage("<a/>", ConversionHints.EMPTY);
+        assertEquals(1, cache.getHits());
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        cache.convertMessage("<a/>", ConversionHints.EMPTY);
+        assertEquals(1, cache.getExpirations());
+        assertEquals(2, conversions.get());
+        assertEquals(1, cache.getSize());
+    }
+}
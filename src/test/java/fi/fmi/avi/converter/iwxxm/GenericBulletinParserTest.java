@@ -3,7 +3,10 @@ package fi.fmi.avi.converter.iwxxm;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
@@ -23,6 +26,7 @@ import fi.fmi.avi.converter.ConversionResult;
 import fi.fmi.avi.converter.iwxxm.bulletin.BulletinProperties;
 import fi.fmi.avi.converter.iwxxm.bulletin.IWXXMGenericBulletinScanner;
 import fi.fmi.avi.converter.iwxxm.conf.IWXXMConverter;
+import fi.fmi.avi.model.GenericAviationWeatherMessage;
 import fi.fmi.avi.model.bulletin.BulletinHeading;
 import fi.fmi.avi.model.bulletin.GenericMeteorologicalBulletin;
 
@@ -54,6 +58,22 @@ public class GenericBulletinParserTest {
         assertTrue(properties.contains(BulletinProperties.Name.MESSAGE));
     }
 
+    @Test
+    public void testScannerInParallel() throws Exception {
+        final BulletinProperties sequential = new BulletinProperties();
+        IWXXMGenericBulletinScanner.collectBulletinProperties(this.getBulletinDocument("taf-bulletin.xml"), sequential, ConversionHints.EMPTY);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final BulletinProperties parallel = new BulletinProperties();
+            IWXXMGenericBulletinScanner.collectBulletinProperties(this.getBulletinDocument("taf-bulletin.xml"), parallel, ConversionHints.EMPTY, executor);
+            final List<GenericAviationWeatherMessage> messages = parallel.getList(BulletinProperties.Name.MESSAGE, GenericAviationWeatherMessage.class);
+            assertEquals(2, messages.size());
+            assertEquals(sequential.getList(BulletinProperties.Name.MESSAGE, GenericAviationWeatherMessage.class), messages);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testParserWithTAF() throws Exception {
         Document input = this.getBulletinDocument("taf-bulletin.xml");
@@ -0,0 +1,197 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fi.fmi.avi.converter.AviMessageConverter;
+import fi.fmi.avi.converter.ConversionHints;
+import fi.fmi.avi.converter.ConversionResult;
+import fi.fmi.avi.converter.ConversionSpecification;
+import fi.fmi.avi.converter.iwxxm.airmet.AIRMETIWXXMDOMSerializer;
+import fi.fmi.avi.converter.iwxxm.bulletin.TAFBulletinIWXXMDOMSerializer;
+import fi.fmi.avi.converter.iwxxm.conf.IWXXMConverter;
+import fi.fmi.avi.converter.iwxxm.sigmet.SIGMETIWXXMDOMSerializer;
+import fi.fmi.avi.converter.iwxxm.taf.TAFIWXXMDOMSerializer;
+import fi.fmi.avi.model.sigmet.immutable.AIRMETImpl;
+import fi.fmi.avi.model.sigmet.immutable.SIGMETImpl;
+import fi.fmi.avi.model.taf.immutable.TAFImpl;
+
+/**
+ * Checks that the native cleanup filter produces the same results as the cleanup XSL stylesheets.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = IWXXMTestConfiguration.class, loader = AnnotationConfigContextLoader.class)
+public class IWXXMCleanupFilterTest {
+
+    private static final Pattern UUID_PATTERN = Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+
+    @Autowired
+    private AviMessageConverter converter;
+
+    @Autowired
+    private ObjectMapper om;
+
+    @Test
+    public void testTestResourcesWithAllCleanupRules() throws Exception {
+        final List<AbstractIWXXMSerializer> serializers = Arrays.asList(new TAFIWXXMDOMSerializer(), new SIGMETIWXXMDOMSerializer(),
+                new AIRMETIWXXMDOMSerializer(), new TAFBulletinIWXXMDOMSerializer());
+        final File resourceDir = new File(IWXXMCleanupFilterTest.class.getResource("taf-A5-1.xml").toURI()).getParentFile();
+        final File[] xmlFiles = resourceDir.listFiles((dir, name) -> name.endsWith(".xml"));
+        assertNotNull(xmlFiles);
+        assertTrue(xmlFiles.length > 0);
+        for (final File xmlFile : xmlFiles) {
+            final Document input = DOMParsingTestBase.readDocument(xmlFile.getName());
+            for (final AbstractIWXXMSerializer serializer : serializers) {
+                final Document xslResult = cleanUpWithXSL(input, serializer);
+                final Document nativeResult = cleanUpWithFilter(input, serializer);
+                assertEquivalent(xmlFile.getName() + " with " + serializer.getClass().getSimpleName(), xslResult.getDocumentElement(),
+                        nativeResult.getDocumentElement());
+            }
+        }
+    }
+
+    @Test
+    public void testSIGMETSerialization() throws Exception {
+        for (final String fileName : Arrays.asList("sigmet1.json", "sigmet2.json", "sigmet3.json", "sigmetSTNR.json", "sigmetMOVING.json",
+                "sigmetFORECASTPOSITION.json", "vasigmet1.json")) {
+            try (InputStream is = IWXXMCleanupFilterTest.class.getResourceAsStream(fileName)) {
+                assertSerializationEquivalent(fileName, om.readValue(is, SIGMETImpl.class), IWXXMConverter.SIGMET_POJO_TO_IWXXM21_DOM);
+            }
+        }
+    }
+
+    @Test
+    public void testAIRMETSerialization() throws Exception {
+        for (final String fileName : Arrays.asList("airmet2.json", "airmetMOVING.json", "airmetSTNR.json", "airmet_bkncld.json", "airmet_iwxxm1.json",
+                "airmet_ovccld_abv.json", "airmet_vis.json", "airmet_wind.json")) {
+            try (InputStream is = IWXXMCleanupFilterTest.class.getResourceAsStream(fileName)) {
+                assertSerializationEquivalent(fileName, om.readValue(is, AIRMETImpl.Builder.class).build(), IWXXMConverter.AIRMET_POJO_TO_IWXXM21_DOM);
+            }
+        }
+    }
+
+    @Test
+    public void testTAFSerialization() throws Exception {
+        try (InputStream is = IWXXMCleanupFilterTest.class.getResourceAsStream("taf-A5-2.json")) {
+            assertSerializationEquivalent("taf-A5-2.json", om.readValue(is, TAFImpl.class), IWXXMConverter.TAF_POJO_TO_IWXXM21_DOM);
+        }
+    }
+
+    private <T> void assertSerializationEquivalent(final String name, final T input, final ConversionSpecification<T, Document> spec) {
+        final ConversionResult<Document> xslResult = converter.convertMessage(input, spec,
+                new ConversionHints(IWXXMConversionHints.KEY_CLEANUP, IWXXMConversionHints.VALUE_CLEANUP_XSLT));
+        final ConversionResult<Document> nativeResult = converter.convertMessage(input, spec,
+                new ConversionHints(IWXXMConversionHints.KEY_CLEANUP, IWXXMConversionHints.VALUE_CLEANUP_NATIVE));
+        assertEquals(name, xslResult.getStatus(), nativeResult.getStatus());
+        assertEquals(name, xslResult.getConvertedMessage().isPresent(), nativeResult.getConvertedMessage().isPresent());
+        if (xslResult.getConvertedMessage().isPresent()) {
+            assertEquivalent(name, xslResult.getConvertedMessage().get().getDocumentElement(),
+                    nativeResult.getConvertedMessage().get().getDocumentElement());
+        }
+    }
+
+    private static Document cleanUpWithXSL(final Document input, final AbstractIWXXMSerializer serializer) throws Exception {
+        final DOMResult result = new DOMResult();
+        TransformerFactory.newInstance()
+                .newTransformer(new StreamSource(serializer.getCleanupTransformationStylesheetLocation(ConversionHints.EMPTY).toExternalForm()))
+                .transform(new DOMSource(input), result);
+        return (Document) result.getNode();
+    }
+
+    private static Document cleanUpWithFilter(final Document input, final AbstractIWXXMSerializer serializer) throws Exception {
+        final SAXTransformerFactory tFactory = (SAXTransformerFactory) TransformerFactory.newInstance();
+        final DOMResult result = new DOMResult();
+        final TransformerHandler output = tFactory.newTransformerHandler();
+        output.setResult(result);
+        final IWXXMCleanupFilter filter = serializer.createCleanupFilter(ConversionHints.EMPTY);
+        filter.setContentHandler(output);
+        tFactory.newTransformer().transform(new DOMSource(input), new SAXResult(filter));
+        return (Document) result.getNode();
+    }
+
+    /*
+     * Compares element names, attributes (excluding namespace declarations) and non-whitespace text content.
+     * Random UUIDs in the attribute values and text are ignored.
+     */
+    private static void assertEquivalent(final String message, final Element expected, final Element actual) {
+        final String path = message + ": /" + expected.getNodeName();
+        assertEquals(path, expected.getNamespaceURI(), actual.getNamespaceURI());
+        assertEquals(path, expected.getLocalName(), actual.getLocalName());
+        assertEquals(path, attributesOf(expected), attributesOf(actual));
+        final List<Node> expectedChildren = significantChildrenOf(expected);
+        final List<Node> actualChildren = significantChildrenOf(actual);
+        assertEquals(path + " child count", expectedChildren.size(), actualChildren.size());
+        for (int i = 0; i < expectedChildren.size(); i++) {
+            final Node e = expectedChildren.get(i);
+            final Node a = actualChildren.get(i);
+            assertEquals(path, e.getNodeType(), a.getNodeType());
+            if (e.getNodeType() == Node.ELEMENT_NODE) {
+                assertEquivalent(path, (Element) e, (Element) a);
+            } else {
+                assertEquals(path, normalize(e.getNodeValue().trim()), normalize(a.getNodeValue().trim()));
+            }
+        }
+    }
+
+    private static Map<String, String> attributesOf(final Element element) {
+        final Map<String, String> retval = new TreeMap<>();
+        final NamedNodeMap atts = element.getAttributes();
+        for (int i = 0; i < atts.getLength(); i++) {
+            final Attr att = (Attr) atts.item(i);
+            if (!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(att.getNamespaceURI())) {
+                retval.put("{" + att.getNamespaceURI() + "}" + att.getLocalName(), normalize(att.getValue()));
+            }
+        }
+        return retval;
+    }
+
+    private static List<Node> significantChildrenOf(final Element element) {
+        final List<Node> retval = new ArrayList<>();
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                retval.add(child);
+            } else if ((child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) && !child.getNodeValue().trim().isEmpty()) {
+                retval.add(child);
+            }
+        }
+        return retval;
+    }
+
+    private static String normalize(final String value) {
+        return UUID_PATTERN.matcher(value).replaceAll("UUID");
+    }
+
+}
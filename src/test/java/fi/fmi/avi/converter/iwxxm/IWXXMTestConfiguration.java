@@ -1,5 +1,8 @@
 package fi.fmi.avi.converter.iwxxm;
 
+import java.io.InputStream;
+import java.io.Reader;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
@@ -47,12 +50,30 @@ public class IWXXMTestConfiguration {
     @Autowired
     private AviMessageSpecificConverter<String, TAF> tafIWXXMStringParser;
 
+    @Autowired
+    private AviMessageSpecificConverter<InputStream, TAF> tafIWXXMInputStreamParser;
+
+    @Autowired
+    private AviMessageSpecificConverter<byte[], TAF> tafIWXXMBytesParser;
+
+    @Autowired
+    private AviMessageSpecificConverter<Reader, TAF> tafIWXXMReaderParser;
+
     @Autowired
     private AviMessageSpecificConverter<Document, METAR> metarIWXXMDOMParser;
 
     @Autowired
     private AviMessageSpecificConverter<String, METAR> metarIWXXMStringParser;
 
+    @Autowired
+    private AviMessageSpecificConverter<InputStream, METAR> metarIWXXMInputStreamParser;
+
+    @Autowired
+    private AviMessageSpecificConverter<byte[], METAR> metarIWXXMBytesParser;
+
+    @Autowired
+    private AviMessageSpecificConverter<Reader, METAR> metarIWXXMReaderParser;
+
     @Autowired
     private AviMessageSpecificConverter<Document, SPECI> speciIWXXMDOMParser;
 
@@ -89,8 +110,14 @@ public class IWXXMTestConfiguration {
         p.setMessageSpecificConverter(IWXXMConverter.TAF_POJO_TO_IWXXM21_STRING,tafIWXXMStringSerializer);
         p.setMessageSpecificConverter(IWXXMConverter.IWXXM21_STRING_TO_TAF_POJO, tafIWXXMStringParser);
         p.setMessageSpecificConverter(IWXXMConverter.IWXXM21_DOM_TO_TAF_POJO, tafIWXXMDOMParser);
+        p.setMessageSpecificConverter(IWXXMConverter.IWXXM21_INPUT_STREAM_TO_TAF_POJO, tafIWXXMInputStreamParser);
+        p.setMessageSpecificConverter(IWXXMConverter.IWXXM21_BYTES_TO_TAF_POJO, tafIWXXMBytesParser);
+        p.setMessageSpecificConverter(IWXXMConverter.IWXXM21_READER_TO_TAF_POJO, tafIWXXMReaderParser);
         p.setMessageSpecificConverter(IWXXMConverter.IWXXM21_STRING_TO_METAR_POJO, metarIWXXMStringParser);
         p.setMessageSpecificConverter(IWXXMConverter.IWXXM21_DOM_TO_METAR_POJO, metarIWXXMDOMParser);
+        p.setMessageSpecificConverter(IWXXMConverter.IWXXM21_INPUT_STREAM_TO_METAR_POJO, metarIWXXMInputStreamParser);
+        p.setMessageSpecificConverter(IWXXMConverter.IWXXM21_BYTES_TO_METAR_POJO, metarIWXXMBytesParser);
+        p.setMessageSpecificConverter(IWXXMConverter.IWXXM21_READER_TO_METAR_POJO, metarIWXXMReaderParser);
         p.setMessageSpecificConverter(IWXXMConverter.IWXXM21_STRING_TO_SPECI_POJO, speciIWXXMStringParser);
         p.setMessageSpecificConverter(IWXXMConverter.IWXXM21_DOM_TO_SPECI_POJO, speciIWXXMDOMParser);
 
@@ -0,0 +1,89 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+
+import fi.fmi.avi.converter.ConversionResult;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = IWXXMTestConfiguration.class, loader = AnnotationConfigContextLoader.class)
+public class IWXXMWarmUpTest {
+
+    @Autowired
+    private IWXXMWarmUp warmUp;
+
+    @Test
+    public void testWarmUp() {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final IWXXMWarmUp.Report report = warmUp.warmUp(executor);
+            final Map<String, IWXXMWarmUp.Step> steps = new HashMap<>();
+            for (final IWXXMWarmUp.Step step : report.getSteps()) {
+                steps.put(step.getName(), step);
+                if (!step.getName().startsWith("Conversion SIGMET") || step.getName().endsWith("serializer")) {
+                    assertFalse(step.toString(), step.getFailure().isPresent());
+                }
+            }
+            assertTrue(steps.containsKey("JAXBContext"));
+            assertTrue(steps.containsKey("Schematron rules for METAR"));
+            assertTrue(steps.containsKey("Cleanup stylesheet for AIRMET DOM serializer"));
+            //The bundled samples are valid:
+            for (final String converter : Arrays.asList("TAF String parser", "TAF DOM parser", "TAF InputStream parser", "TAF byte array parser",
+                    "TAF Reader parser", "METAR String parser", "METAR DOM parser", "METAR InputStream parser", "METAR byte array parser",
+                    "METAR Reader parser", "SPECI String parser", "SPECI DOM parser")) {
+                final IWXXMWarmUp.Step step = steps.get("Conversion " + converter);
+                assertNotNull(converter, step);
+                assertEquals(step.toString(), ConversionResult.Status.SUCCESS, step.getConversionStatus().orElse(null));
+            }
+            //The serializers and the bulletin parser are run with actual messages:
+            for (final String converter : Arrays.asList("TAF DOM serializer", "TAF String serializer", "TAF JAXB serializer", "TAF bulletin DOM serializer",
+                    "TAF bulletin String serializer", "Generic bulletin DOM parser", "Generic bulletin String parser", "SIGMET DOM serializer",
+                    "SIGMET String serializer", "AIRMET DOM serializer", "AIRMET String serializer")) {
+                final IWXXMWarmUp.Step step = steps.get("Conversion " + converter);
+                assertNotNull(converter, step);
+                assertTrue(step.toString(), step.getConversionStatus().isPresent());
+                assertNotEquals(step.toString(), ConversionResult.Status.FAIL, step.getConversionStatus().get());
+            }
+            assertTrue(steps.containsKey("Conversion SIGMET String parser"));
+            assertTrue(steps.containsKey("Conversion SIGMET DOM parser"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSharedResourceInitialization() throws Exception {
+        final IWXXMWarmUp resources = new IWXXMWarmUp();
+        final CompletableFuture<IWXXMWarmUp.Report> readiness = resources.getReadiness();
+        assertFalse(resources.isReady());
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final IWXXMWarmUp.Report report = resources.initializeSharedResources(executor).get(5, TimeUnit.MINUTES);
+            assertTrue(report.toString(), report.isSuccessful());
+            assertSame(report, readiness.get());
+            assertTrue(resources.isReady());
+            assertTrue(resources.getReadiness().isDone());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import org.junit.Test;
+
+public class JAXBObjectPoolTest {
+
+    @Test
+    public void testMetrics() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        final JAXBObjectPool<Object> pool = new JAXBObjectPool<>("test", () -> created.incrementAndGet(), 2);
+
+        final Object first = pool.borrow();
+        final Object second = pool.borrow();
+        assertNotSame(first, second);
+        assertEquals(0, pool.getHits());
+        assertEquals(2, pool.getMisses());
+        assertEquals(2, pool.getCreations());
+
+        pool.release(first);
+        pool.release(second);
+        pool.release(pool.borrow());
+        pool.release(new Object());
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getDiscards());
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void testPrefill() throws Exception {
+        final JAXBObjectPool<Object> pool = new JAXBObjectPool<>("test", Object::new, 3);
+        assertEquals(2, pool.prefill(2));
+        assertEquals(1, pool.prefill(5));
+        assertEquals(0, pool.prefill(5));
+        assertEquals(3, pool.getCreations());
+        assertEquals(0, pool.getMisses());
+        pool.borrow();
+        assertEquals(1, pool.getHits());
+    }
+
+    @Test
+    public void testSharedPoolsReuseInstances() throws Exception {
+        final JAXBObjectPool<Marshaller> marshallers = IWXXMConverterBase.getRenderingMarshallerPool(IWXXMSchemaRegistry.SchemaSet.IWXXM);
+        final Marshaller marshaller = marshallers.borrow();
+        assertNotNull(marshaller.getSchema());
+        marshallers.release(marshaller);
+        final long hits = marshallers.getHits();
+        marshallers.release(marshallers.borrow());
+        assertEquals(hits + 1, marshallers.getHits());
+
+        final JAXBObjectPool<Unmarshaller> unmarshallers = IWXXMConverterBase.getValidatingUnmarshallerPool(IWXXMSchemaRegistry.SchemaSet.IWXXM);
+        final Unmarshaller unmarshaller = unmarshallers.borrow();
+        assertNotNull(unmarshaller.getSchema());
+        unmarshallers.release(unmarshaller);
+
+        assertFalse(IWXXMConverterBase.getJAXBObjectPools().isEmpty());
+    }
+}
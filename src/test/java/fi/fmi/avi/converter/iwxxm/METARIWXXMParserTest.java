@@ -4,7 +4,11 @@ import static junit.framework.TestCase.assertFalse;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -595,4 +599,38 @@ public class METARIWXXMParserTest extends DOMParsingTestBase {
         assertTrue("No issues should have been found", result.getConversionIssues().isEmpty());
     }
 
+    @Test
+    public void testStreamParsersMatchDOMParser() throws Exception {
+        for (final String fileName : Arrays.asList("metar-A3-1.xml", "metar-A3-1_with-missing-cloud-obs.xml", "metar-A3-1_with-missing-cloud-obs2.xml",
+                "metar-A3-1_with-trend-cloud-and-nsc.xml", "metar-EDDF-runwaystate.xml", "metar-NIL.xml", "metar-A3-1_invalid-obs-types.xml")) {
+            final byte[] input;
+            try (InputStream is = METARIWXXMParserTest.class.getResourceAsStream(fileName)) {
+                Objects.requireNonNull(is);
+                input = IOUtils.toByteArray(is);
+            }
+            final ConversionResult<METAR> expected = converter.convertMessage(readDocument(fileName), IWXXMConverter.IWXXM21_DOM_TO_METAR_POJO,
+                    ConversionHints.EMPTY);
+            assertSameResult(fileName, expected,
+                    converter.convertMessage(new ByteArrayInputStream(input), IWXXMConverter.IWXXM21_INPUT_STREAM_TO_METAR_POJO, ConversionHints.EMPTY));
+            assertSameResult(fileName, expected, converter.convertMessage(input, IWXXMConverter.IWXXM21_BYTES_TO_METAR_POJO, ConversionHints.EMPTY));
+            assertSameResult(fileName, expected,
+                    converter.convertMessage(new StringReader(new String(input, StandardCharsets.UTF_8)), IWXXMConverter.IWXXM21_READER_TO_METAR_POJO,
+                            ConversionHints.EMPTY));
+        }
+    }
+
+    @Test
+    public void testStreamParserWithMalformedInput() throws Exception {
+        final ConversionResult<METAR> result = converter.convertMessage("<not-xml".getBytes(StandardCharsets.UTF_8), IWXXMConverter.IWXXM21_BYTES_TO_METAR_POJO,
+                ConversionHints.EMPTY);
+        assertEquals(ConversionResult.Status.FAIL, result.getStatus());
+        assertFalse(result.getConvertedMessage().isPresent());
+    }
+
+    private static void assertSameResult(final String fileName, final ConversionResult<METAR> expected, final ConversionResult<METAR> actual) {
+        assertEquals(fileName, expected.getStatus(), actual.getStatus());
+        assertEquals(fileName, expected.getConversionIssues().size(), actual.getConversionIssues().size());
+        assertEquals(fileName, expected.getConvertedMessage(), actual.getConvertedMessage());
+    }
+
 }
@@ -0,0 +1,50 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import static org.junit.Assert.assertTrue;
+
+import javax.xml.bind.Binder;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Compares the legacy XPath selection of the referred objects with the single-walk index of {@link ReferredObjectRetrievalContext}
+ * on a 50 member TAF bulletin. Not run with the unit tests, run with <code>mvn test -Pbenchmark</code>.
+ */
+public class ReferredObjectRetrievalContextBenchmark {
+    private static final int MEMBERS = 50;
+    private static final int WARM_UP_ROUNDS = 3;
+    private static final int ROUNDS = 10;
+
+    @Test
+    public void testReferredObjectSelection() throws Exception {
+        final Document bulletin = ReferredObjectRetrievalContextTest.createBulletin(MEMBERS);
+        final XPathExpression expr = ReferredObjectRetrievalContextTest.newXPath().compile(ReferredObjectRetrievalContextTest.LEGACY_REFERRED_OBJECTS_XPATH);
+        final Binder<Node> binder = IWXXMConverterBase.getJAXBContext().createBinder();
+        binder.unmarshal(bulletin);
+
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            expr.evaluate(bulletin.getDocumentElement(), XPathConstants.NODESET);
+            new ReferredObjectRetrievalContext(bulletin, binder);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            assertTrue(((NodeList) expr.evaluate(bulletin.getDocumentElement(), XPathConstants.NODESET)).getLength() > 0);
+        }
+        final long xpathNanos = (System.nanoTime() - start) / ROUNDS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            new ReferredObjectRetrievalContext(bulletin, binder);
+        }
+        final long indexNanos = (System.nanoTime() - start) / ROUNDS;
+
+        System.out.printf("%d member TAF bulletin: legacy XPath selection %.1f ms, ReferredObjectRetrievalContext index %.1f ms (%.1fx)%n", MEMBERS,
+                xpathNanos / 1e6, indexNanos / 1e6, (double) xpathNanos / indexNanos);
+    }
+}
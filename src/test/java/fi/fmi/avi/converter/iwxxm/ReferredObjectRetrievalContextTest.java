@@ -0,0 +1,161 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.xml.bind.Binder;
+import javax.xml.bind.JAXBElement;
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+public class ReferredObjectRetrievalContextTest extends DOMParsingTestBase {
+
+    private static final String GML_NS = "http://www.opengis.net/gml/3.2";
+    static final String LEGACY_REFERRED_OBJECTS_XPATH = "//*[@gml:id and //*/@xlink:href=concat('#',@gml:id)]";
+
+    @Test
+    public void testReferredObjectsMatchXPathSelection() throws Exception {
+        for (final String fileName : Arrays.asList("taf-A5-1.xml", "taf-A5-2.xml", "taf-with_airport_ARP.xml", "metar-A3-1.xml",
+                "metar-EDDF-runwaystate.xml", "metar-A3-1_with-trend-cloud-and-nsc.xml", "taf-bulletin.xml", "sigmet-A6-2-TC.xml")) {
+            assertReferredObjectsMatchXPathSelection(fileName, readDocument(fileName));
+        }
+    }
+
+    @Test
+    public void testNilReasons() throws Exception {
+        for (final String fileName : Arrays.asList("metar-A3-1_with-missing-cloud-obs.xml", "metar-A3-1_with-missing-cloud-obs2.xml", "taf-A5-1.xml")) {
+            final Document dom = readDocument(fileName);
+            final Binder<Node> binder = IWXXMConverterBase.getJAXBContext().createBinder();
+            binder.unmarshal(dom);
+            final ReferredObjectRetrievalContext ctx = new ReferredObjectRetrievalContext(dom, binder);
+            final NodeList nils = (NodeList) newXPath().evaluate("//*[@xsi:nil='true' and @nilReason]", dom.getDocumentElement(), XPathConstants.NODESET);
+            for (int i = 0; i < nils.getLength(); i++) {
+                final Element nil = (Element) nils.item(i);
+                final Object parent = binder.getJAXBNode(nil.getParentNode());
+                if (parent != null) {
+                    int index = 0;
+                    for (Node sibling = nil.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling()) {
+                        if (Node.ELEMENT_NODE == sibling.getNodeType() && nil.getLocalName().equals(sibling.getLocalName()) && nil.getNamespaceURI()
+                                .equals(sibling.getNamespaceURI())) {
+                            index++;
+                        }
+                    }
+                    assertEquals(fileName, Optional.of(nil.getAttribute("nilReason")),
+                            ctx.getNilReasonForNthChild(parent, new QName(nil.getNamespaceURI(), nil.getLocalName()), index));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLargeBulletin() throws Exception {
+        final Document bulletin = createBulletin(50);
+        assertReferredObjectsMatchXPathSelection("50 member bulletin", bulletin);
+    }
+
+    @Test
+    public void testFailingGetterResolvesAsAbsent() throws Exception {
+        final Document dom = readDocument("taf-A5-1.xml");
+        final Binder<Node> binder = IWXXMConverterBase.getJAXBContext().createBinder();
+        binder.unmarshal(dom);
+        final ReferredObjectRetrievalContext ctx = new ReferredObjectRetrievalContext(dom, binder);
+        assertFalse(IWXXMConverterBase.resolveProperty(new FailingProperty(), "value", String.class, ctx).isPresent());
+    }
+
+    private static void assertReferredObjectsMatchXPathSelection(final String name, final Document dom) throws Exception {
+        final Binder<Node> binder = IWXXMConverterBase.getJAXBContext().createBinder();
+        binder.unmarshal(dom);
+        final ReferredObjectRetrievalContext ctx = new ReferredObjectRetrievalContext(dom, binder);
+
+        final NodeList hits = (NodeList) newXPath().evaluate(LEGACY_REFERRED_OBJECTS_XPATH, dom.getDocumentElement(), XPathConstants.NODESET);
+        final Set<String> referredIds = new HashSet<>();
+        for (int i = 0; i < hits.getLength(); i++) {
+            final Element hit = (Element) hits.item(i);
+            final String id = hit.getAttributeNS(GML_NS, "id");
+            referredIds.add(id);
+            Object expected = binder.getJAXBNode(hit);
+            if (expected instanceof JAXBElement) {
+                expected = ((JAXBElement<?>) expected).getValue();
+            }
+            if (expected != null) {
+                assertSame(name + ": " + id, expected, ctx.getReferredObject(id, Object.class).orElse(null));
+            }
+        }
+        final NodeList identified = (NodeList) newXPath().evaluate("//*[@gml:id]", dom.getDocumentElement(), XPathConstants.NODESET);
+        for (int i = 0; i < identified.getLength(); i++) {
+            final String id = ((Element) identified.item(i)).getAttributeNS(GML_NS, "id");
+            if (!referredIds.contains(id)) {
+                assertFalse(name + ": " + id, ctx.getReferredObject(id, Object.class).isPresent());
+            }
+        }
+    }
+
+    /*
+     * Creates a bulletin with the given number of TAFs by copying the first TAF of the test bulletin with unique gml:ids.
+     */
+    static Document createBulletin(final int memberCount) throws Exception {
+        final Document bulletin = readDocument("taf-bulletin.xml");
+        final Element root = bulletin.getDocumentElement();
+        final NodeList members = root.getElementsByTagNameNS("http://def.wmo.int/collect/2014", "meteorologicalInformation");
+        final Element template = (Element) members.item(0);
+        while (members.getLength() > 0) {
+            root.removeChild(members.item(0));
+        }
+        for (int i = 0; i < memberCount; i++) {
+            final Element member = (Element) template.cloneNode(true);
+            makeIdsUnique(member, "-" + i);
+            root.appendChild(member);
+        }
+        assertEquals(memberCount, members.getLength());
+        return bulletin;
+    }
+
+    private static void makeIdsUnique(final Element element, final String suffix) {
+        final NamedNodeMap attrs = element.getAttributes();
+        for (int i = 0; i < attrs.getLength(); i++) {
+            final Attr attr = (Attr) attrs.item(i);
+            if ((GML_NS.equals(attr.getNamespaceURI()) && "id".equals(attr.getLocalName())) || (
+                    IWXXMNamespaceContext.getURI("xlink").equals(attr.getNamespaceURI()) && "href".equals(attr.getLocalName()) && attr.getValue()
+                            .startsWith("#"))) {
+                attr.setValue(attr.getValue() + suffix);
+            }
+        }
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (Node.ELEMENT_NODE == child.getNodeType()) {
+                makeIdsUnique((Element) child, suffix);
+            }
+        }
+    }
+
+    static XPath newXPath() {
+        final XPath xpath = XPathFactory.newInstance().newXPath();
+        xpath.setNamespaceContext(new IWXXMNamespaceContext());
+        return xpath;
+    }
+
+    public static class FailingProperty {
+        public String getHref() {
+            throw new IllegalStateException("getHref failed");
+        }
+
+        public String getValue() {
+            return "value";
+        }
+    }
+}
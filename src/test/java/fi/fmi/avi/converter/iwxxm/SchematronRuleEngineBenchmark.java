@@ -0,0 +1,53 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import fi.fmi.avi.converter.ConversionHints;
+
+/**
+ * Compares the Schematron validation throughput of the IWXXM Schematron XSLT and the native {@link SchematronRuleEngine}
+ * on the test messages. Not run with the unit tests, run with <code>mvn test -Pbenchmark</code>.
+ */
+public class SchematronRuleEngineBenchmark {
+    private static final Object[] ENGINES = { IWXXMConversionHints.VALUE_SCHEMATRON_ENGINE_XSLT, IWXXMConversionHints.VALUE_SCHEMATRON_ENGINE_NATIVE };
+    private static final int WARM_UP_ROUNDS = 3;
+    private static final int ROUNDS = 20;
+
+    @Test
+    public void testValidationThroughputByEngine() throws Exception {
+        assertTrue(AbstractJAXBIWXXMParser.getIwxxmSchematronRules().getUnsupportedReason(), AbstractJAXBIWXXMParser.getIwxxmSchematronRules().isSupported());
+        final File resourceDir = new File(SchematronRuleEngineBenchmark.class.getResource("taf-A5-1.xml").toURI()).getParentFile();
+        final File[] xmlFiles = resourceDir.listFiles((dir, name) -> name.endsWith(".xml"));
+        assertNotNull(xmlFiles);
+        final List<Document> inputs = new ArrayList<>();
+        for (final File xmlFile : xmlFiles) {
+            inputs.add(DOMParsingTestBase.readDocument(xmlFile.getName()));
+        }
+        for (final Object engine : ENGINES) {
+            final ConversionHints hints = new ConversionHints();
+            hints.put(IWXXMConversionHints.KEY_SCHEMATRON_ENGINE, engine);
+            hints.put(IWXXMConversionHints.KEY_SCHEMATRON_RULES, IWXXMConversionHints.VALUE_SCHEMATRON_RULES_ALL);
+            for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+                for (final Document input : inputs) {
+                    AbstractJAXBIWXXMParser.validateAgainstIWXXMSchematron(input, hints);
+                }
+            }
+            final long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                for (final Document input : inputs) {
+                    AbstractJAXBIWXXMParser.validateAgainstIWXXMSchematron(input, hints);
+                }
+            }
+            final long nanos = System.nanoTime() - start;
+            System.out.printf("Schematron validation with engine %s: %.1f messages/s%n", engine, ROUNDS * inputs.size() * 1e9 / nanos);
+        }
+    }
+}
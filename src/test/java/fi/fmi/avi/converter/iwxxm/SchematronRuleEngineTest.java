@@ -0,0 +1,100 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import fi.fmi.avi.converter.ConversionHints;
+import fi.fmi.avi.converter.ConversionIssue;
+import fi.fmi.avi.converter.ConversionResult;
+
+/**
+ * Checks that the native Schematron rule engine reports the same failed assertions as the IWXXM Schematron XSLT,
+ * in the same order.
+ */
+public class SchematronRuleEngineTest {
+    private static final String SVRL_NS = "http://purl.oclc.org/dsdl/svrl";
+
+    @Test
+    public void testConformanceWithXSLT() throws Exception {
+        final SchematronRuleEngine engine = AbstractJAXBIWXXMParser.getIwxxmSchematronRules();
+        assertTrue(engine.getUnsupportedReason(), engine.isSupported());
+
+        final File resourceDir = new File(SchematronRuleEngineTest.class.getResource("taf-A5-1.xml").toURI()).getParentFile();
+        final File[] xmlFiles = resourceDir.listFiles((dir, name) -> name.endsWith(".xml"));
+        assertNotNull(xmlFiles);
+        assertTrue(xmlFiles.length > 0);
+        for (final File xmlFile : xmlFiles) {
+            final Document input = DOMParsingTestBase.readDocument(xmlFile.getName());
+            final List<String> expected = failedAssertsWithXSLT(input);
+            final List<String> actual = engine.validate(new DOMSource(input));
+            assertEquals(xmlFile.getName(), expected, actual);
+        }
+    }
+
+    @Test
+    public void testEngineSelectionByHint() throws Exception {
+        final Document input = DOMParsingTestBase.readDocument("taf-A5-1.xml");
+        final ConversionHints xsltHints = new ConversionHints(IWXXMConversionHints.KEY_SCHEMATRON_ENGINE, IWXXMConversionHints.VALUE_SCHEMATRON_ENGINE_XSLT);
+        final ConversionHints nativeHints = new ConversionHints(IWXXMConversionHints.KEY_SCHEMATRON_ENGINE,
+                IWXXMConversionHints.VALUE_SCHEMATRON_ENGINE_NATIVE);
+        assertEquals(issueMessages(input, xsltHints), issueMessages(input, nativeHints));
+    }
+
+    @Test
+    public void testRuleSelectionByMessageType() throws Exception {
+        final File resourceDir = new File(SchematronRuleEngineTest.class.getResource("taf-A5-1.xml").toURI()).getParentFile();
+        final File[] xmlFiles = resourceDir.listFiles((dir, name) -> name.endsWith(".xml"));
+        assertNotNull(xmlFiles);
+        for (final Object engine : new Object[] { IWXXMConversionHints.VALUE_SCHEMATRON_ENGINE_XSLT, IWXXMConversionHints.VALUE_SCHEMATRON_ENGINE_NATIVE }) {
+            final ConversionHints selectedRules = new ConversionHints(IWXXMConversionHints.KEY_SCHEMATRON_ENGINE, engine);
+            final ConversionHints allRulesWithEngine = new ConversionHints();
+            allRulesWithEngine.put(IWXXMConversionHints.KEY_SCHEMATRON_RULES, IWXXMConversionHints.VALUE_SCHEMATRON_RULES_ALL);
+            allRulesWithEngine.put(IWXXMConversionHints.KEY_SCHEMATRON_ENGINE, engine);
+            for (final File xmlFile : xmlFiles) {
+                final Document input = DOMParsingTestBase.readDocument(xmlFile.getName());
+                assertEquals(xmlFile.getName() + " with " + engine, issueMessages(input, allRulesWithEngine), issueMessages(input, selectedRules));
+            }
+        }
+        final SchematronRuleEngine metarRules = AbstractJAXBIWXXMParser.getIwxxmSchematronRules(new QName("http://icao.int/iwxxm/2.1", "METAR"));
+        assertTrue(metarRules.getPatternModes().size() < AbstractJAXBIWXXMParser.getIwxxmSchematronRules().getPatternModes().size());
+    }
+
+    private static List<String> issueMessages(final Document input, final ConversionHints hints) {
+        final ConversionResult<Object> result = new ConversionResult<>();
+        result.addIssue(AbstractJAXBIWXXMParser.validateAgainstIWXXMSchematron(input, hints));
+        final List<String> retval = new ArrayList<>();
+        for (final ConversionIssue issue : result.getConversionIssues()) {
+            retval.add(issue.getMessage());
+        }
+        return retval;
+    }
+
+    private static List<String> failedAssertsWithXSLT(final Document input) throws Exception {
+        final DOMResult svrl = new DOMResult();
+        AbstractJAXBIWXXMParser.getIwxxmTemplates().newTransformer().transform(new DOMSource(input), svrl);
+        final Node svrlNode = svrl.getNode();
+        final Document svrlDoc = svrlNode instanceof Document ? (Document) svrlNode : svrlNode.getOwnerDocument();
+        final NodeList failedAsserts = svrlDoc.getElementsByTagNameNS(SVRL_NS, "failed-assert");
+        final List<String> retval = new ArrayList<>();
+        for (int i = 0; i < failedAsserts.getLength(); i++) {
+            final NodeList texts = ((Element) failedAsserts.item(i)).getElementsByTagNameNS(SVRL_NS, "text");
+            retval.add(texts.getLength() > 0 ? texts.item(0).getTextContent() : "");
+        }
+        return retval;
+    }
+}
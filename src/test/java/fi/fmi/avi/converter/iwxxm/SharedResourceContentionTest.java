@@ -0,0 +1,57 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Checks that all the threads see the same instances of the shared singletons read on every conversion.
+ */
+public class SharedResourceContentionTest {
+    private static final int THREADS = 32;
+
+    @Test
+    public void testSharedInstancesUnderContention() throws Exception {
+        final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        runConcurrently(() -> {
+            synchronized (seen) {
+                seen.add(IWXXMConverterBase.getJAXBContext());
+                seen.add(IWXXMSchemaRegistry.getSchema(IWXXMSchemaRegistry.SchemaSet.IWXXM));
+                seen.add(IWXXMSchemaResourceResolver.getInstance());
+            }
+            return null;
+        });
+        assertEquals(3, seen.size());
+    }
+
+    private static void runConcurrently(final Callable<Void> task) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final CountDownLatch startSignal = new CountDownLatch(1);
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    startSignal.await();
+                    return task.call();
+                }));
+            }
+            startSignal.countDown();
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -13,6 +13,8 @@ import java.time.ZonedDateTime;
 import java.time.temporal.ChronoField;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.xpath.XPath;
@@ -33,8 +35,11 @@ import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 import fi.fmi.avi.converter.AviMessageConverter;
+import fi.fmi.avi.converter.ConversionHints;
 import fi.fmi.avi.converter.ConversionResult;
+import fi.fmi.avi.converter.iwxxm.bulletin.TAFBulletinIWXXMStringSerializer;
 import fi.fmi.avi.converter.iwxxm.conf.IWXXMConverter;
+import fi.fmi.avi.converter.iwxxm.taf.TAFIWXXMJAXBSerializer;
 import fi.fmi.avi.model.PartialOrCompleteTimeInstant;
 import fi.fmi.avi.model.bulletin.BulletinHeading;
 import fi.fmi.avi.model.bulletin.DataTypeDesignatorT2;
@@ -130,6 +135,36 @@ public class TAFBulletinIWXXMSerializerTest {
         assertEquals("24.8325 59.413333", expr.evaluate(docElement));
     }
 
+    @Test
+    public void testParallelMemberConversion() throws Exception {
+        final String[] fileNames = new String[40];
+        for (int i = 0; i < fileNames.length; i++) {
+            fileNames[i] = i % 2 == 0 ? "taf12.json" : "taf1.json";
+        }
+        final TAFBulletin tb = getTAFBulletin(fileNames);
+        final TAFBulletinIWXXMStringSerializer serializer = new TAFBulletinIWXXMStringSerializer();
+        serializer.setMessageConverter(new TAFIWXXMJAXBSerializer());
+        final ConversionResult<String> sequential = serializer.convertMessage(tb, ConversionHints.EMPTY);
+        assertEquals(ConversionResult.Status.SUCCESS, sequential.getStatus());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            serializer.setMemberExecutor(executor);
+            final ConversionResult<String> parallel = serializer.convertMessage(tb, ConversionHints.EMPTY);
+            assertEquals(ConversionResult.Status.SUCCESS, parallel.getStatus());
+            assertEquals(sequential.getConversionIssues().size(), parallel.getConversionIssues().size());
+            //Only the generated ids may differ, the members must be in the same order:
+            assertEquals(withoutUUIDs(sequential.getConvertedMessage().orElse(null)), withoutUUIDs(parallel.getConvertedMessage().orElse(null)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String withoutUUIDs(final String xml) {
+        assertNotNull(xml);
+        return xml.replaceAll("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}", "UUID");
+    }
+
     protected TAF readFromJSON(String fileName) throws IOException {
         ObjectMapper om = new ObjectMapper();
         om.registerModule(new Jdk8Module());
@@ -1,8 +1,14 @@
 package fi.fmi.avi.converter.iwxxm;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Objects;
 
 import org.junit.Test;
@@ -121,5 +127,38 @@ public class TAFIWXXMParserTest extends DOMParsingTestBase {
         assertTrue(result.getConvertedMessage().get().getAerodrome().getFieldElevationValue().isPresent());
     }
 
+    @Test
+    public void testStreamParsersMatchDOMParser() throws Exception {
+        for (final String fileName : Arrays.asList("taf-A5-1.xml", "taf-A5-2.xml", "taf-with_airport_ARP.xml", "taf-with_temperature_fct.xml", "taf-no-issue-time.xml",
+                "taf-non-existent-basefct-phenomenonTime-ref.xml", "taf-wrong-obsproperty.xml")) {
+            final byte[] input;
+            try (InputStream is = TAFIWXXMParserTest.class.getResourceAsStream(fileName)) {
+                Objects.requireNonNull(is);
+                input = IOUtils.toByteArray(is);
+            }
+            final ConversionResult<TAF> expected = converter.convertMessage(readDocument(fileName), IWXXMConverter.IWXXM21_DOM_TO_TAF_POJO,
+                    ConversionHints.EMPTY);
+            assertSameResult(fileName, expected,
+                    converter.convertMessage(new ByteArrayInputStream(input), IWXXMConverter.IWXXM21_INPUT_STREAM_TO_TAF_POJO, ConversionHints.EMPTY));
+            assertSameResult(fileName, expected, converter.convertMessage(input, IWXXMConverter.IWXXM21_BYTES_TO_TAF_POJO, ConversionHints.EMPTY));
+            assertSameResult(fileName, expected,
+                    converter.convertMessage(new StringReader(new String(input, StandardCharsets.UTF_8)), IWXXMConverter.IWXXM21_READER_TO_TAF_POJO,
+                            ConversionHints.EMPTY));
+        }
+    }
+
+    @Test
+    public void testStreamParserWithMalformedInput() throws Exception {
+        final ConversionResult<TAF> result = converter.convertMessage("<not-xml".getBytes(StandardCharsets.UTF_8), IWXXMConverter.IWXXM21_BYTES_TO_TAF_POJO,
+                ConversionHints.EMPTY);
+        assertEquals(ConversionResult.Status.FAIL, result.getStatus());
+        assertFalse(result.getConvertedMessage().isPresent());
+    }
+
+    private static void assertSameResult(final String fileName, final ConversionResult<TAF> expected, final ConversionResult<TAF> actual) {
+        assertEquals(fileName, expected.getStatus(), actual.getStatus());
+        assertEquals(fileName, expected.getConversionIssues().size(), actual.getConversionIssues().size());
+        assertEquals(fileName, expected.getConvertedMessage(), actual.getConvertedMessage());
+    }
 
 }
@@ -30,6 +30,7 @@ import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 import fi.fmi.avi.converter.AviMessageConverter;
+import fi.fmi.avi.converter.ConversionHints;
 import fi.fmi.avi.converter.ConversionResult;
 import fi.fmi.avi.converter.iwxxm.conf.IWXXMConverter;
 import fi.fmi.avi.model.AviationCodeListUser;
@@ -98,6 +99,21 @@ public class TAFIWXXMSerializerTest {
         assertTrue(result.getConvertedMessage().isPresent());
         assertNotNull(result.getConvertedMessage().get());
     }
+
+    @Test
+    public void testTAFStringSerializationWithSeparateValidationPass() throws Exception {
+        TAF t = getTAF();
+        ConversionHints hints = new ConversionHints(IWXXMConversionHints.KEY_SERIALIZATION_VALIDATION,
+                IWXXMConversionHints.VALUE_SERIALIZATION_VALIDATION_SEPARATE_PASS);
+        ConversionResult<String> separate = converter.convertMessage(t, IWXXMConverter.TAF_POJO_TO_IWXXM21_STRING, hints);
+        assertTrue(ConversionResult.Status.SUCCESS == separate.getStatus());
+        assertTrue(separate.getConvertedMessage().isPresent());
+
+        ConversionResult<String> singlePass = converter.convertMessage(t, IWXXMConverter.TAF_POJO_TO_IWXXM21_STRING);
+        assertTrue(ConversionResult.Status.SUCCESS == singlePass.getStatus());
+        assertEquals(separate.getConversionIssues().size(), singlePass.getConversionIssues().size());
+    }
+
     @Test
     public void testTAFDOMSerialization() throws Exception {
         assertTrue(converter.isSpecificationSupported(IWXXMConverter.TAF_POJO_TO_IWXXM21_DOM));
@@ -0,0 +1,78 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+
+import fi.fmi.avi.converter.AviMessageConverter;
+import fi.fmi.avi.converter.ConversionHints;
+import fi.fmi.avi.converter.ConversionResult;
+import fi.fmi.avi.converter.iwxxm.conf.IWXXMConverter;
+import fi.fmi.avi.model.taf.TAF;
+
+/**
+ * Measures the conversion throughput at each validation level. Not run with the unit tests, run with
+ * <code>mvn test -Pbenchmark</code>.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = IWXXMTestConfiguration.class, loader = AnnotationConfigContextLoader.class)
+public class ValidationLevelBenchmark {
+    private static final Object[] LEVELS = { IWXXMConversionHints.VALUE_VALIDATION_LEVEL_NONE, IWXXMConversionHints.VALUE_VALIDATION_LEVEL_SCHEMA,
+            IWXXMConversionHints.VALUE_VALIDATION_LEVEL_SCHEMA_AND_SCHEMATRON, IWXXMConversionHints.VALUE_VALIDATION_LEVEL_FULL };
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private AviMessageConverter converter;
+
+    @Test
+    public void testParsingThroughputByLevel() throws Exception {
+        final String input = readResource("taf-A5-1.xml");
+        for (final Object level : LEVELS) {
+            final ConversionHints hints = new ConversionHints(IWXXMConversionHints.KEY_VALIDATION_LEVEL, level);
+            //Warm up the resources needed by the level:
+            assertEquals(level.toString(), ConversionResult.Status.SUCCESS,
+                    converter.convertMessage(input, IWXXMConverter.IWXXM21_STRING_TO_TAF_POJO, hints).getStatus());
+            final long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                converter.convertMessage(input, IWXXMConverter.IWXXM21_STRING_TO_TAF_POJO, hints);
+            }
+            printThroughput("TAF parsing", level, System.nanoTime() - start);
+        }
+    }
+
+    @Test
+    public void testSerializationThroughputByLevel() throws Exception {
+        final ConversionResult<TAF> parsed = converter.convertMessage(readResource("taf-A5-1.xml"), IWXXMConverter.IWXXM21_STRING_TO_TAF_POJO);
+        assertTrue(parsed.getConvertedMessage().isPresent());
+        final TAF taf = parsed.getConvertedMessage().get();
+        for (final Object level : LEVELS) {
+            final ConversionHints hints = new ConversionHints(IWXXMConversionHints.KEY_VALIDATION_LEVEL, level);
+            assertTrue(level.toString(), converter.convertMessage(taf, IWXXMConverter.TAF_POJO_TO_IWXXM21_STRING, hints).getConvertedMessage().isPresent());
+            final long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                converter.convertMessage(taf, IWXXMConverter.TAF_POJO_TO_IWXXM21_STRING, hints);
+            }
+            printThroughput("TAF serialization", level, System.nanoTime() - start);
+        }
+    }
+
+    private static void printThroughput(final String conversion, final Object level, final long nanos) {
+        System.out.printf("%s with validation level %s: %.1f messages/s%n", conversion, level, ROUNDS * 1e9 / nanos);
+    }
+
+    private static String readResource(final String name) throws Exception {
+        try (InputStream is = ValidationLevelBenchmark.class.getResourceAsStream(name)) {
+            return IOUtils.toString(is, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package fi.fmi.avi.converter.iwxxm;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+
+import fi.fmi.avi.converter.AviMessageConverter;
+import fi.fmi.avi.converter.ConversionHints;
+import fi.fmi.avi.converter.ConversionIssue;
+import fi.fmi.avi.converter.ConversionResult;
+import fi.fmi.avi.converter.iwxxm.conf.IWXXMConverter;
+import fi.fmi.avi.model.bulletin.GenericMeteorologicalBulletin;
+import fi.fmi.avi.model.metar.METAR;
+import fi.fmi.avi.model.taf.TAF;
+
+/**
+ * Checks that each validation level runs the validations it includes, and only those.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = IWXXMTestConfiguration.class, loader = AnnotationConfigContextLoader.class)
+public class ValidationLevelTest {
+    private static final Object[] LEVELS = { IWXXMConversionHints.VALUE_VALIDATION_LEVEL_NONE, IWXXMConversionHints.VALUE_VALIDATION_LEVEL_SCHEMA,
+            IWXXMConversionHints.VALUE_VALIDATION_LEVEL_SCHEMA_AND_SCHEMATRON, IWXXMConversionHints.VALUE_VALIDATION_LEVEL_FULL };
+    private static final String SCHEMA_ISSUE_PREFIX = "XML Schema validation issue";
+    private static final String SCHEMATRON_ISSUE_PREFIX = "Failed Schematron assertation";
+
+    @Autowired
+    private AviMessageConverter converter;
+
+    @Test
+    public void testSchemaValidationByLevel() throws Exception {
+        //An attribute not allowed by the XML Schema, ignored when unmarshalling:
+        final String input = readResource("taf-A5-1.xml").replaceFirst("<iwxxm:TAF ", "<iwxxm:TAF notInSchema=\"true\" ");
+        for (final Object level : LEVELS) {
+            final ConversionHints hints = new ConversionHints(IWXXMConversionHints.KEY_VALIDATION_LEVEL, level);
+            final ConversionResult<TAF> result = converter.convertMessage(input, IWXXMConverter.IWXXM21_STRING_TO_TAF_POJO, hints);
+            if (IWXXMConversionHints.VALUE_VALIDATION_LEVEL_NONE.equals(level)) {
+                assertTrue(level.toString(), result.getConvertedMessage().isPresent());
+                assertTrue(level.toString(), issueMessages(result, SCHEMA_ISSUE_PREFIX).isEmpty());
+            } else {
+                assertFalse(level.toString(), result.getConvertedMessage().isPresent());
+                assertFalse(level.toString(), issueMessages(result, SCHEMA_ISSUE_PREFIX).isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testSchematronValidationByLevel() throws Exception {
+        //Valid against the XML Schema, but conflicting with the Schematron rules for CAVOK:
+        final String input = readResource("metar-A3-1_with-cavok-conflicts.xml");
+        for (final Object level : LEVELS) {
+            final ConversionHints hints = new ConversionHints(IWXXMConversionHints.KEY_VALIDATION_LEVEL, level);
+            final ConversionResult<METAR> result = converter.convertMessage(input, IWXXMConverter.IWXXM21_STRING_TO_METAR_POJO, hints);
+            assertTrue(level.toString(), issueMessages(result, SCHEMA_ISSUE_PREFIX).isEmpty());
+            final boolean schematron = Arrays.asList(IWXXMConversionHints.VALUE_VALIDATION_LEVEL_SCHEMA_AND_SCHEMATRON,
+                    IWXXMConversionHints.VALUE_VALIDATION_LEVEL_FULL).contains(level);
+            assertTrue(level.toString(), schematron != issueMessages(result, SCHEMATRON_ISSUE_PREFIX).isEmpty());
+        }
+    }
+
+    @Test
+    public void testBulletinParsingByLevel() throws Exception {
+        final String input = readResource("taf-bulletin.xml");
+        for (final Object level : LEVELS) {
+            final ConversionHints hints = new ConversionHints(IWXXMConversionHints.KEY_VALIDATION_LEVEL, level);
+            final ConversionResult<GenericMeteorologicalBulletin> result = converter.convertMessage(input,
+                    IWXXMConverter.IWXXM21_STRING_TO_GENERIC_BULLETIN_POJO, hints);
+            assertTrue(level.toString(), result.getConvertedMessage().isPresent());
+        }
+    }
+
+    private static List<String> issueMessages(final ConversionResult<?> result, final String prefix) {
+        final List<String> retval = new ArrayList<>();
+        for (final ConversionIssue issue : result.getConversionIssues()) {
+            if (issue.getMessage() != null && issue.getMessage().startsWith(prefix)) {
+                retval.add(issue.getMessage());
+            }
+        }
+        return retval;
+    }
+
+    private static String readResource(final String name) throws Exception {
+        try (InputStream is = ValidationLevelTest.class.getResourceAsStream(name)) {
+            return IOUtils.toString(is, StandardCharsets.UTF_8);
+        }
+    }
+}